@@ -1,14 +1,75 @@
 package com.example.demo;
 
+import java.time.Duration;
+
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestTemplate;
 
 @Configuration
+@EnableScheduling
 public class AppConfig {
+
+    /**
+     * Pooled keep-alive transport shared by every upstream call.
+     *
+     * Connections per host are capped, and waiting for a free connection is
+     * bounded too, so a stalled provider fails requests fast instead of
+     * pinning every Tomcat worker.
+     */
+    @Bean
+    public CloseableHttpClient upstreamHttpClient(
+            @Value("${weatherapi.http.connect-timeout:2s}") Duration connectTimeout,
+            @Value("${weatherapi.http.read-timeout:5s}") Duration readTimeout,
+            @Value("${weatherapi.http.pool-acquire-timeout:1s}") Duration acquireTimeout,
+            @Value("${weatherapi.http.keep-alive:30s}") Duration keepAlive,
+            @Value("${weatherapi.http.max-connections:200}") int maxConnections,
+            @Value("${weatherapi.http.max-connections-per-host:50}") int maxConnectionsPerHost) {
+
+        ConnectionConfig connectionConfig = ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.of(connectTimeout))
+                .setSocketTimeout(Timeout.of(readTimeout))
+                .build();
+        TimeValue idle = TimeValue.of(keepAlive);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(Timeout.of(acquireTimeout))
+                .setResponseTimeout(Timeout.of(readTimeout))
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                        .setMaxConnTotal(maxConnections)
+                        .setMaxConnPerRoute(maxConnectionsPerHost)
+                        .setDefaultConnectionConfig(connectionConfig)
+                        .build())
+                .setDefaultRequestConfig(requestConfig)
+                // reuse an idle connection for at most keep-alive, or less if the provider says so
+                .setKeepAliveStrategy((response, context) -> {
+                    TimeValue offered = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return TimeValue.isPositive(offered) && offered.compareTo(idle) < 0 ? offered : idle;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(idle)
+                .build();
+    }
+
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
-        return builder.build();
+    public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient upstreamHttpClient) {
+        return builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(upstreamHttpClient))
+                .build();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+package com.example.demo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.client.HttpStatusCodeException;
+
+import com.example.demo.service.Degraded;
+import com.example.demo.service.WeatherApiClient;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * POST /api/batch
+ * Body: { "locations": ["London", "Paris", "48.85,2.35"], "view": "map" | "details" }
+ *
+ * Fetches every distinct location concurrently (at most weatherapi.batch.parallelism
+ * at a time per batch) and returns one item per location. A failed location
+ * gets an error on its own item instead of failing the whole batch; one served
+ * from last-known-good data carries the {@link Degraded} reason on its item,
+ * and the response carries the header when any item does.
+ */
+@RestController
+@RequestMapping("/api")
+public class BatchController {
+
+    private final WeatherApiClient weatherApiClient;
+
+    @Value("${weatherapi.batch.parallelism:8}")
+    private int parallelism;
+
+    @Value("${weatherapi.batch.max-items:50}")
+    private int maxItems;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public BatchController(WeatherApiClient weatherApiClient) {
+        this.weatherApiClient = weatherApiClient;
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> getBatch(@RequestBody BatchRequest request) {
+
+        if (request.locations == null || request.locations.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Provide at least one location"));
+        }
+
+        // dedupe on the same key the cache uses, keeping the first spelling
+        Map<String, String> distinct = new LinkedHashMap<>();
+        for (String location : request.locations) {
+            if (location == null || location.isBlank()) continue;
+            distinct.putIfAbsent(weatherApiClient.locationKey(location), location.trim());
+        }
+
+        if (distinct.size() > maxItems) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "Too many locations",
+                    "message", "At most " + maxItems + " distinct locations per batch"
+            ));
+        }
+
+        boolean details = "details".equalsIgnoreCase(request.view);
+        Semaphore permits = new Semaphore(parallelism);
+
+        List<String> queries = new ArrayList<>(distinct.values());
+        List<Future<BatchItem>> futures = new ArrayList<>();
+        for (String location : queries) {
+            futures.add(executor.submit(() -> {
+                permits.acquire();
+                try {
+                    // worker threads have no response to mark, so the reason goes on the item
+                    BatchItem[] item = new BatchItem[1];
+                    String degraded = Degraded.collect(() -> item[0] = load(location, details));
+                    item[0].degraded = degraded;
+                    return item[0];
+                } finally {
+                    permits.release();
+                }
+            }));
+        }
+
+        List<BatchItem> items = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                items.add(futures.get(i).get());
+            } catch (Exception e) {
+                // load() already turns upstream failures into item errors
+                items.add(BatchItem.failed(queries.get(i), e));
+            }
+        }
+
+        items.stream().map(item -> item.degraded).filter(Objects::nonNull).findFirst().ifPresent(Degraded::mark);
+        return ResponseEntity.ok(items);
+    }
+
+    private BatchItem load(String location, boolean details) {
+        try {
+            if (details) {
+                return BatchItem.ok(location, DetailsController.toDTO(
+                        weatherApiClient.current(location, DetailsController.WeatherResponse.class)));
+            }
+            return BatchItem.ok(location, MapController.toDTO(
+                    weatherApiClient.current(location, MapController.WeatherResponse.class)));
+
+        } catch (Exception e) {
+            return BatchItem.failed(location, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+
+    /* =================================
+       DTOs
+       ================================= */
+
+    public static class BatchRequest {
+        public List<String> locations;
+        public String view;
+    }
+
+    public static class BatchItem {
+        public String query;
+        public Object data;
+        public String error;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public String degraded;
+
+        static BatchItem ok(String query, Object data) {
+            BatchItem item = new BatchItem();
+            item.query = query;
+            item.data = data;
+            return item;
+        }
+
+        static BatchItem failed(String query, Exception e) {
+            BatchItem item = new BatchItem();
+            item.query = query;
+            // upstream exception messages carry the request URL (and API key), so keep them out
+            item.error = e instanceof HttpStatusCodeException s
+                    ? "Weather provider returned " + s.getStatusCode().value()
+                    : "Failed to fetch weather";
+            return item;
+        }
+    }
+}
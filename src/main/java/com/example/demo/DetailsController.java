@@ -1,54 +1,57 @@
 package com.example.demo;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.example.demo.service.ResponseCache;
+import com.example.demo.service.WeatherApiClient;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 @RestController
 @RequestMapping("/api")
 public class DetailsController {
 
-    @Value("${weatherapi.api.key}")
-    private String apiKey;
+    private final WeatherApiClient weatherApiClient;
+    private final ResponseCache responseCache;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    public DetailsController(WeatherApiClient weatherApiClient, ResponseCache responseCache) {
+        this.weatherApiClient = weatherApiClient;
+        this.responseCache = responseCache;
+    }
 
 
     /* ==================================
        GET /api/details
        ================================== */
     @GetMapping("/details")
-    public DetailsDTO getDetails(@RequestParam String city) {
+    public ResponseEntity<?> getDetails(@RequestParam String city) {
 
         try {
-            String url =
-                    "https://api.weatherapi.com/v1/current.json?key="
-                            + apiKey
-                            + "&q=" + city;
-
-            WeatherResponse response =
-                    restTemplate.getForObject(url, WeatherResponse.class);
-
-            if (response == null) return new DetailsDTO(0.0, 0.0, 0, 0.0, 0.0, 0.0, 0, 0);
-
-            Current c = response.getCurrent();
-
-            // ✅ FIX: include temperature FIRST
-            return new DetailsDTO(
-                    c.getTemp_c(),          // ← ADDED
-                    c.getFeelslike_c(),
-                    c.getHumidity(),
-                    c.getWind_kph(),
-                    c.getPressure_mb(),
-                    c.getUv(),
-                    c.getVis_km(),
-                    c.getCloud()
-            );
+            return responseCache.respond("details", city, "",
+                    weatherApiClient.current(city),
+                    WeatherResponse.class,
+                    DetailsController::toDTO);
 
         } catch (Exception e) {
-            return new DetailsDTO(0.0, 0.0, 0, 0.0, 0.0, 0.0, 0, 0);
+            return ResponseEntity.ok(new DetailsDTO(0.0, 0.0, 0, 0.0, 0.0, 0.0, 0, 0));
         }
     }
+
+    static DetailsDTO toDTO(WeatherResponse response) {
+        if (response == null) return new DetailsDTO(0.0, 0.0, 0, 0.0, 0.0, 0.0, 0, 0);
+
+        Current c = response.getCurrent();
+
+        // ✅ FIX: include temperature FIRST
+        return new DetailsDTO(
+                c.getTemp_c(),          // ← ADDED
+                c.getFeelslike_c(),
+                c.getHumidity(),
+                c.getWind_kph(),
+                c.getPressure_mb(),
+                c.getUv(),
+                c.getVis_km(),
+                c.getCloud()
+        );
+    }
     
     
 
@@ -1,53 +1,67 @@
 package com.example.demo;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.UnaryOperator;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.example.demo.service.CompactForecast;
+import com.example.demo.service.CompactForecast.Day;
+import com.example.demo.service.ResponseCache;
+import com.example.demo.service.WeatherApiClient;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 @RestController
 @RequestMapping("/api")
 public class ForecastController {
 
-    @Value("${weatherapi.api.key}")
-    private String apiKey;
+    private final WeatherApiClient weatherApiClient;
+    private final ResponseCache responseCache;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    public ForecastController(WeatherApiClient weatherApiClient, ResponseCache responseCache) {
+        this.weatherApiClient = weatherApiClient;
+        this.responseCache = responseCache;
+    }
 
     @GetMapping("/forecast")
-    public List<ForecastDayDTO> getForecast(
+    public ResponseEntity<?> getForecast(
             @RequestParam String city,
             @RequestParam(defaultValue = "C") String unit
     ) {
+        // one cache entry per unit, not per spelling of it
+        Unit parsed = Unit.parse(unit);
 
         try {
-            String url = String.format(
-                    "https://api.weatherapi.com/v1/forecast.json?key=%s&q=%s&days=7",
-                    apiKey,
-                    city
-            );
+            return responseCache.respond("forecast", city, parsed.name(),
+                    weatherApiClient.forecast(city, 7),
+                    (forecast, icon) -> toDTOs(forecast, parsed, icon));
 
-            WeatherForecastResponse response =
-                    restTemplate.getForObject(url, WeatherForecastResponse.class);
+        } catch (Exception e) {
+            return ResponseEntity.ok(List.of());
+        }
+    }
 
-            if (response == null || response.getForecast() == null) return List.of();
+    enum Unit {
+        C, F;
 
-            return Arrays.stream(response.getForecast().getForecastday())
-                    .map(day -> new ForecastDayDTO(
-                            day.getDate(),
-                            unit.equals("F") ? day.getDay().getMaxtemp_f() : day.getDay().getMaxtemp_c(),
-                            unit.equals("F") ? day.getDay().getMintemp_f() : day.getDay().getMintemp_c(),
-                            day.getDay().getCondition().getText(),
-                            day.getDay().getCondition().getIcon()
-                    ))
-                    .collect(Collectors.toList());
+        /** case-insensitive; C for anything else */
+        static Unit parse(String value) {
+            return "F".equalsIgnoreCase(value.trim()) ? F : C;
+        }
+    }
 
-        } catch (Exception e) {
-            return List.of();
+    static List<ForecastDayDTO> toDTOs(CompactForecast forecast, Unit unit, UnaryOperator<String> icon) {
+        List<ForecastDayDTO> out = new ArrayList<>(forecast.days());
+        for (int d = 0; d < forecast.days(); d++) {
+            out.add(new ForecastDayDTO(
+                    forecast.date(d),
+                    forecast.day(d, unit == Unit.F ? Day.MAXTEMP_F : Day.MAXTEMP_C),
+                    forecast.day(d, unit == Unit.F ? Day.MINTEMP_F : Day.MINTEMP_C),
+                    forecast.dayCondition(d),
+                    icon.apply(forecast.dayIcon(d))
+            ));
         }
+        return out;
     }
 
 
@@ -70,57 +84,4 @@ public class ForecastController {
             this.icon = icon;
         }
     }
-
-
-    /* ========== WeatherAPI mapping classes ========== */
-
-    static class WeatherForecastResponse {
-        private Forecast forecast;
-        public Forecast getForecast() { return forecast; }
-        public void setForecast(Forecast forecast) { this.forecast = forecast; }
-    }
-
-    static class Forecast {
-        private ForecastDay[] forecastday;
-        public ForecastDay[] getForecastday() { return forecastday; }
-        public void setForecastday(ForecastDay[] forecastday) { this.forecastday = forecastday; }
-    }
-
-    static class ForecastDay {
-        private String date;
-        private Day day;
-
-        public String getDate() { return date; }
-        public void setDate(String date) { this.date = date; }
-
-        public Day getDay() { return day; }
-        public void setDay(Day day) { this.day = day; }
-    }
-
-    static class Day {
-        private double maxtemp_c;
-        private double mintemp_c;
-        private double maxtemp_f;
-        private double mintemp_f;
-        private Condition condition;
-
-        public double getMaxtemp_c() { return maxtemp_c; }
-        public double getMintemp_c() { return mintemp_c; }
-        public double getMaxtemp_f() { return maxtemp_f; }
-        public double getMintemp_f() { return mintemp_f; }
-
-        public Condition getCondition() { return condition; }
-        public void setCondition(Condition condition) { this.condition = condition; }
-    }
-
-    static class Condition {
-        private String text;
-        private String icon;
-
-        public String getText() { return text; }
-        public String getIcon() { return icon; }
-
-        public void setText(String text) { this.text = text; }
-        public void setIcon(String icon) { this.icon = icon; }
-    }
 }
@@ -1,58 +1,59 @@
 package com.example.demo;
 
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.UnaryOperator;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.example.demo.service.CompactForecast;
+import com.example.demo.service.CompactForecast.Hour;
+import com.example.demo.service.ResponseCache;
+import com.example.demo.service.WeatherApiClient;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 @RestController
 @RequestMapping("/api")
 public class HourlyController {
 
-    @Value("${weatherapi.api.key:}")
-    private String apiKey;
+    private final WeatherApiClient weatherApiClient;
+    private final ResponseCache responseCache;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    public HourlyController(WeatherApiClient weatherApiClient, ResponseCache responseCache) {
+        this.weatherApiClient = weatherApiClient;
+        this.responseCache = responseCache;
+    }
 
     @GetMapping("/hourly")
-    public List<HourlyDTO> getHourly(@RequestParam String city) {
+    public ResponseEntity<?> getHourly(@RequestParam String city) {
 
         try {
-            String url = String.format(
-                "https://api.weatherapi.com/v1/forecast.json?key=%s&q=%s&days=1",
-                apiKey,
-                city
-            );
-
-            WeatherHourlyResponse response =
-                    restTemplate.getForObject(url, WeatherHourlyResponse.class);
-
-            if (response == null) return List.of();
-
-            return Arrays.stream(response.getForecast()
-                    .getForecastday()[0]
-                    .getHour())
-                    .limit(24)
-                    .map(h -> new HourlyDTO(
-                    		h.getTime().substring(11, 16),
-                            h.getTemp_c(),
-                            h.getFeelslike_c(),
-                            h.getHumidity(),
-                            h.getWind_kph(),
-                            h.getChance_of_rain(),
-                            h.getCondition().getText(),
-                            h.getCondition().getIcon()
-                    ))
-                    .collect(Collectors.toList());
+            return responseCache.respond("hourly", city, "",
+                    weatherApiClient.forecast(city, 1),
+                    HourlyController::toDTOs);
 
         } catch (Exception e) {
-            return List.of();
+            return ResponseEntity.ok(List.of());
         }
     }
 
+    static List<HourlyDTO> toDTOs(CompactForecast forecast, UnaryOperator<String> icon) {
+        int hours = Math.min(24, forecast.hours());
+        List<HourlyDTO> out = new ArrayList<>(hours);
+        for (int h = 0; h < hours; h++) {
+            out.add(new HourlyDTO(
+                    forecast.time(h).substring(11, 16),
+                    forecast.hour(h, Hour.TEMP_C),
+                    forecast.hour(h, Hour.FEELSLIKE_C),
+                    (int) forecast.hour(h, Hour.HUMIDITY),
+                    forecast.hour(h, Hour.WIND_KPH),
+                    forecast.hour(h, Hour.CHANCE_OF_RAIN),
+                    forecast.hourCondition(h),
+                    icon.apply(forecast.hourIcon(h))
+            ));
+        }
+        return out;
+    }
+
 
     /* ================= DTOs ================= */
 
@@ -79,49 +80,4 @@ public class HourlyController {
             this.icon = icon;
         }
     }
-
-    /* ===== WeatherAPI mapping ===== */
-
-    static class WeatherHourlyResponse {
-        private Forecast forecast;
-        public Forecast getForecast() { return forecast; }
-        public void setForecast(Forecast forecast) { this.forecast = forecast; }
-    }
-
-    static class Forecast {
-        private ForecastDay[] forecastday;
-        public ForecastDay[] getForecastday() { return forecastday; }
-    }
-
-    static class ForecastDay {
-        private Hour[] hour;
-        public Hour[] getHour() { return hour; }
-    }
-
-    static class Hour {
-
-        private String time;
-        private double temp_c;
-        private double feelslike_c;
-        private int humidity;
-        private double wind_kph;
-        private double chance_of_rain;
-        private Condition condition;
-
-        public String getTime() { return time; }
-        public double getTemp_c() { return temp_c; }
-        public double getFeelslike_c() { return feelslike_c; }
-        public int getHumidity() { return humidity; }
-        public double getWind_kph() { return wind_kph; }
-        public double getChance_of_rain() { return chance_of_rain; }
-        public Condition getCondition() { return condition; }
-    }
-
-    static class Condition {
-        private String text;
-        private String icon;
-
-        public String getText() { return text; }
-        public String getIcon() { return icon; }
-    }
 }
@@ -0,0 +1,49 @@
+package com.example.demo;
+
+import java.net.URI;
+import java.time.Duration;
+
+import com.example.demo.service.IconCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api")
+public class IconController {
+
+    private final IconCache iconCache;
+
+    public IconController(IconCache iconCache) {
+        this.iconCache = iconCache;
+    }
+
+
+    /* ==================================
+       GET /api/icons/64x64/day/113.png
+       ================================== */
+    @GetMapping("/icons/{size:64x64|128x128}/{period:day|night}/{code:[0-9][0-9][0-9]}.png")
+    public ResponseEntity<byte[]> getIcon(@PathVariable String size,
+                                          @PathVariable String period,
+                                          @PathVariable String code) {
+        String path = period + "/" + code;
+        try {
+            IconCache.Icon icon = iconCache.get(size, path);
+
+            // an icon path never changes content
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                    .eTag(icon.etag())
+                    .body(icon.png());
+
+        } catch (Exception e) {
+            // not fetched yet and the CDN is unreachable from here; let the browser try it directly
+            return ResponseEntity.status(HttpStatus.FOUND)
+                    .location(URI.create(iconCache.sourceUrl(size, path)))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.demo;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.example.demo.service.IconCache;
+import com.example.demo.service.LiveConditions;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * GET /api/live?locations=London,Paris
+ *
+ * Server-Sent Events stream of current conditions ("conditions" events, one
+ * per location whenever it changes, "unavailable" when a location is given up
+ * on). All clients watching a location share one upstream poller; see
+ * {@link LiveConditions}. 503 once the overall topic cap is reached.
+ */
+@RestController
+@RequestMapping("/api")
+public class LiveController {
+
+    private final LiveConditions live;
+    private final IconCache iconCache;
+
+    public LiveController(LiveConditions live, IconCache iconCache) {
+        this.live = live;
+        this.iconCache = iconCache;
+    }
+
+    @GetMapping("/live")
+    public SseEmitter live(@RequestParam String locations) {
+        List<String> queries = Arrays.stream(locations.split(","))
+                .map(String::trim)
+                .filter(q -> !q.isEmpty())
+                .distinct()
+                .toList();
+
+        if (queries.isEmpty() || queries.size() > live.maxLocations()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Provide between 1 and " + live.maxLocations() + " comma-separated locations");
+        }
+        try {
+            return live.subscribe(queries, conditions -> {
+                LiveDTO dto = toDTO(conditions);
+                dto.icon = iconCache.publicIcon(dto.icon);
+                return dto;
+            });
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (LiveConditions.TooManyTopicsException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    static LiveDTO toDTO(JsonNode conditions) {
+        JsonNode loc = conditions.path("location");
+        JsonNode cur = conditions.path("current");
+        return new LiveDTO(
+                loc.path("name").asText(),
+                loc.path("region").asText(),
+                loc.path("country").asText(),
+                loc.path("lat").asDouble(),
+                loc.path("lon").asDouble(),
+                cur.path("temp_c").asDouble(),
+                cur.path("feelslike_c").asDouble(),
+                cur.path("humidity").asInt(),
+                cur.path("wind_kph").asDouble(),
+                cur.path("condition").path("text").asText(),
+                cur.path("condition").path("icon").asText(),
+                cur.path("last_updated_epoch").asLong()
+        );
+    }
+
+    /* ==================================
+       DTO
+       ================================== */
+    public static class LiveDTO {
+        public String city;
+        public String region;
+        public String country;
+        public double lat;
+        public double lon;
+        public double temp_c;
+        public double feelslike_c;
+        public int humidity;
+        public double wind_kph;
+        public String condition;
+        public String icon;
+        public long last_updated_epoch;
+
+        public LiveDTO(String city, String region, String country, double lat, double lon,
+                       double temp_c, double feelslike_c, int humidity, double wind_kph,
+                       String condition, String icon, long last_updated_epoch) {
+            this.city = city;
+            this.region = region;
+            this.country = country;
+            this.lat = lat;
+            this.lon = lon;
+            this.temp_c = temp_c;
+            this.feelslike_c = feelslike_c;
+            this.humidity = humidity;
+            this.wind_kph = wind_kph;
+            this.condition = condition;
+            this.icon = icon;
+            this.last_updated_epoch = last_updated_epoch;
+        }
+    }
+}
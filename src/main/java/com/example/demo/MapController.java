@@ -1,17 +1,29 @@
 package com.example.demo;
 
-import org.springframework.beans.factory.annotation.Value;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import com.example.demo.service.MapViewport;
+import com.example.demo.service.WeatherApiClient;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 @RestController
 @RequestMapping("/api")
 public class MapController {
 
-    @Value("${weatherapi.api.key}")
-    private String apiKey;
+    private final WeatherApiClient weatherApiClient;
+    private final MapViewport mapViewport;
+    private final ObjectMapper objectMapper;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    public MapController(WeatherApiClient weatherApiClient, MapViewport mapViewport, ObjectMapper objectMapper) {
+        this.weatherApiClient = weatherApiClient;
+        this.mapViewport = mapViewport;
+        this.objectMapper = objectMapper;
+    }
 
 
     /* =================================
@@ -22,30 +34,65 @@ public class MapController {
 
         try {
 
-            String url =
-                    "https://api.weatherapi.com/v1/current.json?key="
-                            + apiKey
-                            + "&q=" + city;
-
             WeatherResponse response =
-                    restTemplate.getForObject(url, WeatherResponse.class);
+                    weatherApiClient.current(city, WeatherResponse.class);
 
             if (response == null) return null;
 
-            return new MapDTO(
-                    response.getLocation().getName(),
-                    response.getLocation().getLat(),
-                    response.getLocation().getLon(),
-                    response.getCurrent().getTemp_c(),
-                    response.getCurrent().getCondition().getText(),
-                    response.getCurrent().getCondition().getIcon()
-            );
+            return toDTO(response);
 
         } catch (Exception e) {
             return null;
         }
     }
 
+    /* =================================
+       GET /api/map/area
+       all known places in the viewport,
+       one marker per screen cell at this zoom
+       ================================= */
+    @GetMapping("/map/area")
+    public ResponseEntity<?> getArea(
+            @RequestParam double north,
+            @RequestParam double south,
+            @RequestParam double east,
+            @RequestParam double west,
+            @RequestParam(defaultValue = "3") int zoom
+    ) {
+
+        if (south > north || south < -90 || north > 90 || west < -180 || west > 180
+                || east < -180 || east > 180 || zoom < 0 || zoom > 22) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "Invalid viewport",
+                    "message", "Expect -90 <= south <= north <= 90, longitudes in [-180, 180] and zoom 0-22"
+            ));
+        }
+
+        try {
+            MapViewport.Area area = mapViewport.area(south, west, north, east, zoom);
+
+            List<MapDTO> points = new ArrayList<>(area.points().size());
+            for (JsonNode point : area.points()) {
+                points.add(toDTO(objectMapper.treeToValue(point, WeatherResponse.class)));
+            }
+            return ResponseEntity.ok(new AreaDTO(area.total(), points));
+
+        } catch (Exception e) {
+            return ResponseEntity.ok(new AreaDTO(0, List.of()));
+        }
+    }
+
+    static MapDTO toDTO(WeatherResponse response) {
+        return new MapDTO(
+                response.getLocation().getName(),
+                response.getLocation().getLat(),
+                response.getLocation().getLon(),
+                response.getCurrent().getTemp_c(),
+                response.getCurrent().getCondition().getText(),
+                response.getCurrent().getCondition().getIcon()
+        );
+    }
+
 
 
     /* =================================
@@ -72,6 +119,18 @@ public class MapController {
 
 
 
+    public static class AreaDTO {
+        public int total;
+        public List<MapDTO> points;
+
+        public AreaDTO(int total, List<MapDTO> points) {
+            this.total = total;
+            this.points = points;
+        }
+    }
+
+
+
     /* =================================
        WeatherAPI mapping classes
        ================================= */
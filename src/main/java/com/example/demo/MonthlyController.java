@@ -1,58 +1,84 @@
 package com.example.demo;
 
+import com.example.demo.service.CompactForecast;
+import com.example.demo.service.CompactForecast.Day;
+import com.example.demo.service.LocationKeys;
+import com.example.demo.service.ObservationStore;
+import com.example.demo.service.WeatherApiClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Arrays;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
-
-import org.springframework.web.client.RestTemplate;
 
 @RestController
 @RequestMapping("/api")
 public class MonthlyController {
 
-    @Value("${weatherapi.api.key}")
-    private String apiKey;
+    private final WeatherApiClient weatherApiClient;
+    private final ObservationStore observations;
+
+    @Value("${weatherapi.history.days:30}")
+    private int defaultHistoryDays;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    public MonthlyController(WeatherApiClient weatherApiClient, ObservationStore observations) {
+        this.weatherApiClient = weatherApiClient;
+        this.observations = observations;
+    }
 
 
     /* ===============================
        GET /api/monthly
+       Up to `days` past days from the local observation history
+       (none while it is disabled), then the 7 forecast days.
        =============================== */
     @GetMapping("/monthly")
     public List<MonthlyDTO> getMonthly(
-            @RequestParam String city
+            @RequestParam String city,
+            @RequestParam(required = false) Integer days
     ) {
+        List<MonthlyDTO> ahead = List.of();
+        String key = weatherApiClient.locationKey(city);
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
 
         try {
-            String url =
-                    "https://api.weatherapi.com/v1/forecast.json?key="
-                            + apiKey
-                            + "&q=" + city
-                            + "&days=7"; // free plan max
+            CompactForecast forecast = weatherApiClient.forecast(city, 7); // free plan max
 
+            ahead = toDTOs(forecast);
+            if (LocationKeys.canonical(forecast.head()) != null) key = LocationKeys.canonical(forecast.head());
+            if (!ahead.isEmpty()) today = LocalDate.parse(ahead.get(0).date);
 
-            WeatherForecastResponse response =
-                    restTemplate.getForObject(url, WeatherForecastResponse.class);
+        } catch (Exception e) {
+            // past days below are still served; they never need upstream
+        }
 
-            if (response == null) return List.of();
+        int historyDays = Math.max(0, Math.min(days != null ? days : defaultHistoryDays,
+                (int) observations.retention().toDays()));
+        if (!observations.isEnabled() || historyDays == 0) return ahead;
 
-            return Arrays.stream(response.getForecast().getForecastday())
-                    .map(d -> new MonthlyDTO(
-                            d.getDate(),
-                            d.getDay().getMaxtemp_c(),
-                            d.getDay().getMintemp_c(),
-                            d.getDay().getCondition().getText(),
-                            d.getDay().getCondition().getIcon()
-                    ))
-                    .collect(Collectors.toList());
+        List<MonthlyDTO> out = new ArrayList<>();
+        for (ObservationStore.DailyObservation o :
+                observations.daily(key, today.minusDays(historyDays), today.minusDays(1))) {
+            out.add(new MonthlyDTO(o.date().toString(), o.maxTempC(), o.minTempC(), o.conditionText(), o.icon()));
+        }
+        out.addAll(ahead);
+        return out;
+    }
 
-        } catch (Exception e) {
-            return List.of();
+    static List<MonthlyDTO> toDTOs(CompactForecast forecast) {
+        List<MonthlyDTO> out = new ArrayList<>(forecast.days());
+        for (int d = 0; d < forecast.days(); d++) {
+            out.add(new MonthlyDTO(
+                    forecast.date(d),
+                    forecast.day(d, Day.MAXTEMP_C),
+                    forecast.day(d, Day.MINTEMP_C),
+                    forecast.dayCondition(d),
+                    forecast.dayIcon(d)
+            ));
         }
+        return out;
     }
 
 
@@ -76,48 +102,4 @@ public class MonthlyController {
             this.icon = icon;
         }
     }
-
-
-
-    /* ===============================
-       WeatherAPI Mapping Classes
-       =============================== */
-
-    static class WeatherForecastResponse {
-        private Forecast forecast;
-
-        public Forecast getForecast() { return forecast; }
-    }
-
-    static class Forecast {
-        private ForecastDay[] forecastday;
-
-        public ForecastDay[] getForecastday() { return forecastday; }
-    }
-
-    static class ForecastDay {
-        private String date;
-        private Day day;
-
-        public String getDate() { return date; }
-        public Day getDay() { return day; }
-    }
-
-    static class Day {
-        private double maxtemp_c;
-        private double mintemp_c;
-        private Condition condition;
-
-        public double getMaxtemp_c() { return maxtemp_c; }
-        public double getMintemp_c() { return mintemp_c; }
-        public Condition getCondition() { return condition; }
-    }
-
-    static class Condition {
-        private String text;
-        private String icon;
-
-        public String getText() { return text; }
-        public String getIcon() { return icon; }
-    }
 }
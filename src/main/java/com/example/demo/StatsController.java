@@ -0,0 +1,53 @@
+package com.example.demo;
+
+import java.util.List;
+
+import com.example.demo.service.RollingStats;
+import com.example.demo.service.WeatherApiClient;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * GET /api/stats?city=London
+ *
+ * Rolling min/max/mean/percentiles of temperature, humidity and wind over the
+ * configured windows, from readings already fetched for other requests; never
+ * calls upstream. 404 until the location has been fetched at least once.
+ * A city name resolves through the aliases kept with the observation history,
+ * so a restart does not hide what was recorded under it.
+ */
+@RestController
+@RequestMapping("/api")
+public class StatsController {
+
+    private final WeatherApiClient weatherApiClient;
+    private final RollingStats rollingStats;
+
+    public StatsController(WeatherApiClient weatherApiClient, RollingStats rollingStats) {
+        this.weatherApiClient = weatherApiClient;
+        this.rollingStats = rollingStats;
+    }
+
+    @GetMapping("/stats")
+    public StatsDTO getStats(@RequestParam String city) {
+        String key = weatherApiClient.locationKey(city);
+        List<RollingStats.Window> windows = rollingStats.stats(key);
+        if (windows.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No observations yet for " + city);
+        }
+        return new StatsDTO(key, windows);
+    }
+
+    /* ===== DTO ===== */
+
+    public static class StatsDTO {
+        public String location;
+        public List<RollingStats.Window> windows;
+
+        public StatsDTO(String location, List<RollingStats.Window> windows) {
+            this.location = location;
+            this.windows = windows;
+        }
+    }
+}
@@ -1,16 +1,24 @@
 package com.example.demo;
 
+import com.example.demo.service.CityIndex;
+import com.example.demo.service.CompactForecast;
+import com.example.demo.service.CompactForecast.Day;
+import com.example.demo.service.IconCache;
+import com.example.demo.service.ResponseCache;
+import com.example.demo.service.WeatherApiClient;
 import com.example.demo.service.WeatherService;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
-import java.net.URI;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.UnaryOperator;
 
 /**
  * WeatherController:
@@ -22,19 +30,28 @@ import java.util.*;
 
 public class WeatherController {
 
+    private static final Logger log = LoggerFactory.getLogger(WeatherController.class);
+
     private final WeatherService weatherService;
+    private final WeatherApiClient weatherApiClient;
+    private final ResponseCache responseCache;
+    private final CityIndex cityIndex;
+    private final IconCache iconCache;
 
     // WeatherAPI config (set in application.properties)
     @Value("${weatherapi.api.key:}")
     private String weatherApiKey;
 
-    @Value("${weatherapi.base.url:http://api.weatherapi.com/v1}")
-    private String weatherApiBaseUrl;
-
-    private final RestTemplate rest = new RestTemplate();
-
-    public WeatherController(WeatherService weatherService) {
+    public WeatherController(WeatherService weatherService,
+                             WeatherApiClient weatherApiClient,
+                             ResponseCache responseCache,
+                             CityIndex cityIndex,
+                             IconCache iconCache) {
         this.weatherService = weatherService;
+        this.weatherApiClient = weatherApiClient;
+        this.responseCache = responseCache;
+        this.cityIndex = cityIndex;
+        this.iconCache = iconCache;
     }
 
     /**
@@ -57,7 +74,8 @@ public class WeatherController {
             if (city != null && !city.isBlank()) {
                 qParam = city.trim();
             } else if (lat != null && lon != null) {
-                qParam = String.format("%f,%f", lat, lon);
+                // WeatherApiClient snaps it to the location grid, so nearby users share one upstream query
+                qParam = coordinates(lat, lon);
             } else {
                 return ResponseEntity.badRequest().body(Map.of(
                         "error", "Missing parameters",
@@ -66,74 +84,13 @@ public class WeatherController {
             }
 
             // Call service (your existing WeatherService)
-            JsonNode root = weatherService.fetchWeather(qParam);
-
-            // Prepare response
-            Map<String, Object> out = new HashMap<>();
-
-            // Location
-            JsonNode location = root.path("location");
-            out.put("city", location.path("name").asText(""));
-            out.put("region", location.path("region").asText(""));
-            out.put("country", location.path("country").asText(""));
-            
-            out.put("lat", location.path("lat").asDouble(0.0));
-            out.put("lon", location.path("lon").asDouble(0.0));
-
-            // Current
-            JsonNode current = root.path("current");
-            out.put("temp_c", current.path("temp_c").asDouble(Double.NaN));
-            out.put("feelslike_c", current.path("feelslike_c").asDouble(Double.NaN));
-            out.put("humidity", current.path("humidity").asInt(-1));
-            out.put("pressure_mb", current.path("pressure_mb").asInt(-1));
-            out.put("wind_kph", current.path("wind_kph").asDouble(Double.NaN));
-            out.put("wind_dir", current.path("wind_dir").asText(""));
-            out.put("vis_km", current.path("vis_km").asDouble(Double.NaN));
-            out.put("uv", current.path("uv").asDouble(Double.NaN));
-            out.put("temp_f", current.path("temp_f").asDouble(Double.NaN));
-            out.put("feelslike_f", current.path("feelslike_f").asDouble(Double.NaN));
-
-
-            String conditionText = current.path("condition").path("text").asText("");
-            out.put("condition", conditionText);
-
-            String rawIcon = current.path("condition").path("icon").asText("");
-            if (rawIcon.startsWith("//")) rawIcon = "https:" + rawIcon;
-            out.put("icon", rawIcon);
-
-            // Forecast (3 days) - same as before
-            List<Map<String, Object>> forecastList = new ArrayList<>();
-            JsonNode forecastDays = root.path("forecast").path("forecastday");
-            if (forecastDays.isArray()) {
-                for (JsonNode dayNode : forecastDays) {
-                    Map<String, Object> day = new HashMap<>();
-                    day.put("date", dayNode.path("date").asText());
-
-                    JsonNode dayInfo = dayNode.path("day");
-                    day.put("avg_temp_c", dayInfo.path("avgtemp_c").asDouble(Double.NaN));
-                    day.put("max_temp_c", dayInfo.path("maxtemp_c").asDouble(Double.NaN));
-                    day.put("min_temp_c", dayInfo.path("mintemp_c").asDouble(Double.NaN));
-                    day.put("avg_temp_f", dayInfo.path("avgtemp_f").asDouble(Double.NaN));
-                    day.put("max_temp_f", dayInfo.path("maxtemp_f").asDouble(Double.NaN));
-                    day.put("min_temp_f", dayInfo.path("mintemp_f").asDouble(Double.NaN));
-
-
-                    String dcond = dayInfo.path("condition").path("text").asText("");
-                    day.put("condition", dcond);
-
-                    String dicon = dayInfo.path("condition").path("icon").asText("");
-                    if (dicon.startsWith("//")) dicon = "https:" + dicon;
-                    day.put("icon", dicon);
-
-                    forecastList.add(day);
-                }
-            }
-            out.put("forecast", forecastList);
+            CompactForecast forecast = weatherService.fetchWeather(qParam);
 
-            return ResponseEntity.ok(out);
+            return responseCache.respond("weather", qParam, "", forecast,
+                    (f, icon) -> toDTO(f, httpsIcons(icon)));
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("Failed to fetch weather for {}", city != null ? city : lat + "," + lon, e);
             return ResponseEntity.status(500).body(Map.of(
                     "error", "Failed to fetch weather",
                     "details", e.getMessage()
@@ -169,106 +126,21 @@ public class WeatherController {
             // Build query q parameter (WeatherAPI accepts "lat,lon" or city)
             String q;
             if (city != null && !city.isBlank()) {
-                q = URLEncoder.encode(city.trim(), StandardCharsets.UTF_8);
+                q = city.trim();
             } else {
-                q = String.format("%s,%s", lat, lon);
+                q = coordinates(lat, lon);
             }
 
             // days=7 -> WeatherAPI returns forecastday[] (usually 7)
-            String url = String.format("%s/forecast.json?key=%s&q=%s&days=7&aqi=no&alerts=no",
-                    weatherApiBaseUrl.replaceAll("/$", ""), weatherApiKey, q);
-
-            // Fetch
-            Map<?,?> resp = rest.getForObject(URI.create(url), Map.class);
-            if (resp == null) {
-                return ResponseEntity.status(502).body(Map.of("error", "No response from weather provider"));
-            }
-
-            // Extract lat/lon/timezone if present
-            Map<String, Object> out = new HashMap<>();
-            Object locationObj = resp.get("location");
-            if (locationObj instanceof Map) {
-                Map<?,?> loc = (Map<?,?>) locationObj;
-                out.put("lat", loc.containsKey("lat") ? loc.get("lat") : null);
-                out.put("lon", loc.containsKey("lon") ? loc.get("lon") : null);
-                out.put("timezone", loc.containsKey("tz_id") ? loc.get("tz_id") : resp.get("timezone"));
-
-            } else {
-                out.put("lat", lat);
-                out.put("lon", lon);
-            }
-
-            // Extract forecastday list
-            Object forecastObj = resp.get("forecast");
-            List<?> forecastDays = Collections.emptyList();
-            if (forecastObj instanceof Map) {
-                Object fd = ((Map<?,?>) forecastObj).get("forecastday");
-                if (fd instanceof List) forecastDays = (List<?>) fd;
-            }
+            CompactForecast forecast = weatherApiClient.forecast(q, 7);
 
-            List<Map<String, Object>> daysOut = new ArrayList<>();
-            for (Object o : forecastDays) {
-                if (!(o instanceof Map)) continue;
-                Map<?,?> dayMap = (Map<?,?>) o;
-                Map<String, Object> dayOut = new HashMap<>();
-
-                // date_epoch available in WeatherAPI (seconds)
-                Object dateEpoch = dayMap.get("date_epoch");
-                if (dateEpoch instanceof Number) {
-                    dayOut.put("dt", ((Number) dateEpoch).longValue());
-                } else {
-                    // fallback: keep date string and attempt no conversion
-                    dayOut.put("dt", dayMap.get("date"));
-                }
-
-                // day object
-                Object dayObj = dayMap.get("day");
-                if (dayObj instanceof Map) {
-                    Map<?,?> d = (Map<?,?>) dayObj;
-                    // pick metric or imperial fields
-                    if ("imperial".equalsIgnoreCase(units)) {
-                        // WeatherAPI provides *_f and maxwind_mph
-                        Object avgF = d.get("avgtemp_f");
-                        Object minF = d.get("mintemp_f");
-                        Object maxF = d.get("maxtemp_f");
-                        dayOut.put("temp_day", avgF);
-                        dayOut.put("temp_min", minF);
-                        dayOut.put("temp_max", maxF);
-                        // wind in mph
-                        dayOut.put("wind_speed", d.containsKey("maxwind_mph") ? d.get("maxwind_mph") : d.get("maxwind_kph"));
-
-                    } else {
-                        // metric
-                        Object avgC = d.get("avgtemp_c");
-                        Object minC = d.get("mintemp_c");
-                        Object maxC = d.get("maxtemp_c");
-                        dayOut.put("temp_day", avgC);
-                        dayOut.put("temp_min", minC);
-                        dayOut.put("temp_max", maxC);
-                        // wind in kph
-                        dayOut.put("wind_speed", d.containsKey("maxwind_kph") ? d.get("maxwind_kph") : d.get("maxwind_mph"));
-
-                    }
-                    // humidity
-                    dayOut.put("humidity", d.get("avghumidity"));
-                    // condition
-                    Object condObj = d.get("condition");
-                    if (condObj instanceof Map) {
-                        Map<?,?> cond = (Map<?,?>) condObj;
-                        dayOut.put("weather_desc", cond.get("text"));
-                        String icon = Objects.toString(cond.get("icon"), "");
-                        if (icon.startsWith("//")) icon = "https:" + icon;
-                        dayOut.put("weather_icon", icon);
-                    }
-                }
-                daysOut.add(dayOut);
-            }
-
-            out.put("daily", daysOut);
-            return ResponseEntity.ok(out);
+            // anything but imperial is metric, and shares metric's cache entry
+            boolean imperial = "imperial".equalsIgnoreCase(units.trim());
+            return responseCache.respond("weather-forecast", q, imperial ? "imperial" : "metric", forecast,
+                    (f, icon) -> toForecastDTO(f, lat, lon, imperial, httpsIcons(icon)));
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.warn("Forecast fetch failed for {}", city != null ? city : lat + "," + lon, e);
             return ResponseEntity.status(500).body(Map.of("error", "Forecast fetch failed", "detail", e.getMessage()));
         }
     }
@@ -276,25 +148,9 @@ public class WeatherController {
     @GetMapping("/cities")
     public ResponseEntity<?> searchCities(@RequestParam String q) {
         try {
-            String url = String.format(
-                    "%s/search.json?key=%s&q=%s",
-                    weatherApiBaseUrl.replaceAll("/$", ""),
-                    weatherApiKey,
-                    URLEncoder.encode(q, StandardCharsets.UTF_8)
-            );
-
-            List<?> resp = rest.getForObject(URI.create(url), List.class);
-
             List<String> names = new ArrayList<>();
-            if (resp != null) {
-                for (Object o : resp) {
-                    if (o instanceof Map) {
-                        Map<?, ?> m = (Map<?, ?>) o;
-                        names.add(
-                                m.get("name") + ", " + m.get("country")
-                        );
-                    }
-                }
+            for (CityIndex.City c : cityIndex.search(q, 10)) {
+                names.add(c.label());
             }
 
             return ResponseEntity.ok(names);
@@ -304,4 +160,184 @@ public class WeatherController {
         }
     }
 
+
+    /* "lat,lon" in plain decimals (never 1.0E-4), which the location grid snapping parses */
+    static String coordinates(double lat, double lon) {
+        return String.format(Locale.ROOT, "%f,%f", lat, lon);
+    }
+
+    static WeatherDTO toDTO(CompactForecast forecast, UnaryOperator<String> icon) {
+        // Location
+        JsonNode location = forecast.head().path("location");
+        WeatherDTO out = new WeatherDTO();
+        out.city = location.path("name").asText("");
+        out.region = location.path("region").asText("");
+        out.country = location.path("country").asText("");
+
+        out.lat = location.path("lat").asDouble(0.0);
+        out.lon = location.path("lon").asDouble(0.0);
+
+        // Current
+        JsonNode current = forecast.head().path("current");
+        out.temp_c = current.path("temp_c").asDouble(Double.NaN);
+        out.feelslike_c = current.path("feelslike_c").asDouble(Double.NaN);
+        out.humidity = current.path("humidity").asInt(-1);
+        out.pressure_mb = current.path("pressure_mb").asInt(-1);
+        out.wind_kph = current.path("wind_kph").asDouble(Double.NaN);
+        out.wind_dir = current.path("wind_dir").asText("");
+        out.vis_km = current.path("vis_km").asDouble(Double.NaN);
+        out.uv = current.path("uv").asDouble(Double.NaN);
+        out.temp_f = current.path("temp_f").asDouble(Double.NaN);
+        out.feelslike_f = current.path("feelslike_f").asDouble(Double.NaN);
+
+        out.condition = current.path("condition").path("text").asText("");
+        out.icon = icon.apply(current.path("condition").path("icon").asText(""));
+
+        // Forecast (3 days) - same as before
+        out.forecast = new ArrayList<>(forecast.days());
+        for (int d = 0; d < forecast.days(); d++) {
+            DayDTO day = new DayDTO();
+            day.date = Objects.requireNonNullElse(forecast.date(d), "");
+
+            day.avg_temp_c = forecast.day(d, Day.AVGTEMP_C);
+            day.max_temp_c = forecast.day(d, Day.MAXTEMP_C);
+            day.min_temp_c = forecast.day(d, Day.MINTEMP_C);
+            day.avg_temp_f = forecast.day(d, Day.AVGTEMP_F);
+            day.max_temp_f = forecast.day(d, Day.MAXTEMP_F);
+            day.min_temp_f = forecast.day(d, Day.MINTEMP_F);
+
+            day.condition = Objects.requireNonNullElse(forecast.dayCondition(d), "");
+            day.icon = icon.apply(Objects.requireNonNullElse(forecast.dayIcon(d), ""));
+
+            out.forecast.add(day);
+        }
+
+        return out;
+    }
+
+    /* ================= helpers ================= */
+
+    static ForecastDTO toForecastDTO(CompactForecast forecast, Double lat, Double lon, boolean imperial,
+                                     UnaryOperator<String> icon) {
+        // Extract lat/lon/timezone if present
+        ForecastDTO out = new ForecastDTO();
+        JsonNode loc = forecast.head().path("location");
+        if (loc.isObject()) {
+            out.lat = number(loc.get("lat"));
+            out.lon = number(loc.get("lon"));
+            out.timezone = loc.has("tz_id") ? loc.get("tz_id") : NullNode.getInstance();
+        } else {
+            out.lat = lat;
+            out.lon = lon;
+        }
+
+        out.daily = new ArrayList<>(forecast.days());
+        for (int d = 0; d < forecast.days(); d++) {
+            DailyDTO dayOut = new DailyDTO();
+
+            // date_epoch available in WeatherAPI (seconds)
+            Number dateEpoch = forecast.dateEpoch(d);
+            dayOut.dt = dateEpoch != null ? (Object) dateEpoch.longValue() : forecast.date(d);
+
+            if (imperial) {
+                // WeatherAPI provides *_f and maxwind_mph
+                dayOut.temp_day = forecast.dayNumber(d, Day.AVGTEMP_F);
+                dayOut.temp_min = forecast.dayNumber(d, Day.MINTEMP_F);
+                dayOut.temp_max = forecast.dayNumber(d, Day.MAXTEMP_F);
+                dayOut.wind_speed = either(forecast.dayNumber(d, Day.MAXWIND_MPH), forecast.dayNumber(d, Day.MAXWIND_KPH));
+            } else {
+                dayOut.temp_day = forecast.dayNumber(d, Day.AVGTEMP_C);
+                dayOut.temp_min = forecast.dayNumber(d, Day.MINTEMP_C);
+                dayOut.temp_max = forecast.dayNumber(d, Day.MAXTEMP_C);
+                dayOut.wind_speed = either(forecast.dayNumber(d, Day.MAXWIND_KPH), forecast.dayNumber(d, Day.MAXWIND_MPH));
+            }
+            dayOut.humidity = forecast.dayNumber(d, Day.AVGHUMIDITY);
+            dayOut.weather_desc = forecast.dayCondition(d);
+            dayOut.weather_icon = icon.apply(Objects.requireNonNullElse(forecast.dayIcon(d), ""));
+
+            out.daily.add(dayOut);
+        }
+        return out;
+    }
+
+    /** these endpoints never return WeatherAPI's protocol-relative ("//cdn...") icons */
+    private UnaryOperator<String> httpsIcons(UnaryOperator<String> icon) {
+        return upstream -> iconCache.publicIcon(icon.apply(upstream));
+    }
+
+    /** keeps the upstream numeric type (14 stays 14, 14.0 stays 14.0) */
+    private static Number number(JsonNode node) {
+        return node != null && node.isNumber() ? node.numberValue() : null;
+    }
+
+    private static Number either(Number preferred, Number fallback) {
+        return preferred != null ? preferred : fallback;
+    }
+
+
+    /* =====================================================
+       Response models - property order matches the
+       HashMap-based responses these endpoints used to return
+       ===================================================== */
+
+    @JsonPropertyOrder({"country", "feelslike_c", "uv", "feelslike_f", "city", "icon", "lon", "forecast",
+            "wind_dir", "temp_c", "temp_f", "wind_kph", "condition", "vis_km", "humidity", "region",
+            "pressure_mb", "lat"})
+    public static class WeatherDTO {
+        public String city;
+        public String region;
+        public String country;
+        public double lat;
+        public double lon;
+        public double temp_c;
+        public double feelslike_c;
+        public int humidity;
+        public int pressure_mb;
+        public double wind_kph;
+        public String wind_dir;
+        public double vis_km;
+        public double uv;
+        public double temp_f;
+        public double feelslike_f;
+        public String condition;
+        public String icon;
+        public List<DayDTO> forecast;
+    }
+
+    @JsonPropertyOrder({"date", "max_temp_f", "condition", "avg_temp_f", "min_temp_f", "max_temp_c",
+            "icon", "avg_temp_c", "min_temp_c"})
+    public static class DayDTO {
+        public String date;
+        public double avg_temp_c;
+        public double max_temp_c;
+        public double min_temp_c;
+        public double avg_temp_f;
+        public double max_temp_f;
+        public double min_temp_f;
+        public String condition;
+        public String icon;
+    }
+
+    @JsonPropertyOrder({"timezone", "daily", "lon", "lat"})
+    public static class ForecastDTO {
+        public Number lat;
+        public Number lon;
+        /* null (written as null) without tz_id; left out entirely when the payload has no location */
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public JsonNode timezone;
+        public List<DailyDTO> daily;
+    }
+
+    @JsonPropertyOrder({"dt", "temp_min", "temp_day", "humidity", "wind_speed", "weather_desc",
+            "temp_max", "weather_icon"})
+    public static class DailyDTO {
+        public Object dt;
+        public Number temp_day;
+        public Number temp_min;
+        public Number temp_max;
+        public Number wind_speed;
+        public Number humidity;
+        public String weather_desc;
+        public String weather_icon;
+    }
 }
@@ -0,0 +1,146 @@
+package com.example.demo.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+/**
+ * On-disk copy of the upstream caches.
+ *
+ * Layout (big-endian): magic, version, then one record per entry
+ * <pre>
+ *   cache name (short length + UTF-8)   key (short length + UTF-8)
+ *   fetchedAt (long)   expiresAt (long)   payload (int length + JSON bytes)
+ * </pre>
+ * A snapshot is written to a temporary file and moved into place, so readers
+ * never see a half-written one. Opening maps the file and only walks the record
+ * headers to index where each payload sits; payloads are parsed when looked up.
+ */
+final class CacheSnapshot {
+
+    private static final int MAGIC = 0x57434331; // "WCC1"
+    private static final int VERSION = 1;
+
+    /** keys are stored with a short length prefix; longer ones are not worth keeping anyway */
+    private static final int MAX_KEY_LENGTH = 1024;
+
+    private record Slot(int offset, int length, long fetchedAt, long expiresAt) {
+    }
+
+    private final ObjectMapper objectMapper;
+    private final MappedByteBuffer buffer;
+    private final Map<String, Map<String, Slot>> slots;
+
+    private CacheSnapshot(ObjectMapper objectMapper, MappedByteBuffer buffer, Map<String, Map<String, Slot>> slots) {
+        this.objectMapper = objectMapper;
+        this.buffer = buffer;
+        this.slots = slots;
+    }
+
+    static void write(Path file, Map<String, Map<String, UpstreamCache.Entry<JsonNode>>> caches,
+                      ObjectMapper objectMapper) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream os = Files.newOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os, 64 * 1024))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (Map.Entry<String, Map<String, UpstreamCache.Entry<JsonNode>>> cache : caches.entrySet()) {
+                    for (Map.Entry<String, UpstreamCache.Entry<JsonNode>> e : cache.getValue().entrySet()) {
+                        if (e.getKey().length() > MAX_KEY_LENGTH) continue;
+                        byte[] payload = objectMapper.writeValueAsBytes(e.getValue().value());
+                        writeString(out, cache.getKey());
+                        writeString(out, e.getKey());
+                        out.writeLong(e.getValue().fetchedAt());
+                        out.writeLong(e.getValue().expiresAt());
+                        out.writeInt(payload.length);
+                        out.write(payload);
+                    }
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Maps the file and indexes its records; null when there is no usable snapshot. */
+    static CacheSnapshot open(Path file, ObjectMapper objectMapper) throws IOException {
+        if (!Files.isRegularFile(file)) return null;
+
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) return null;
+
+        Map<String, Map<String, Slot>> slots = new HashMap<>();
+        try {
+            while (buffer.hasRemaining()) {
+                String cache = readString(buffer);
+                String key = readString(buffer);
+                long fetchedAt = buffer.getLong();
+                long expiresAt = buffer.getLong();
+                int length = buffer.getInt();
+                slots.computeIfAbsent(cache, c -> new HashMap<>())
+                        .put(key, new Slot(buffer.position(), length, fetchedAt, expiresAt));
+                buffer.position(buffer.position() + length);
+            }
+        } catch (RuntimeException e) {
+            // truncated tail; keep the records read so far
+        }
+        return new CacheSnapshot(objectMapper, buffer, slots);
+    }
+
+    List<String> keys(String cache) {
+        return List.copyOf(slots.getOrDefault(cache, Map.of()).keySet());
+    }
+
+    int size() {
+        return slots.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /** Parses the entry for the key, or null when the snapshot has none (or it is unreadable). */
+    UpstreamCache.Entry<JsonNode> lookup(String cache, String key) {
+        Slot slot = slots.getOrDefault(cache, Map.of()).get(key);
+        if (slot == null) return null;
+
+        ByteBuffer payload = buffer.slice(slot.offset(), slot.length());
+        try {
+            JsonNode value = objectMapper.readTree(new ByteBufferBackedInputStream(payload));
+            return new UpstreamCache.Entry<>(value, slot.fetchedAt(), slot.expiresAt());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.web.client.HttpClientErrorException;
+
+/**
+ * Count-based circuit breaker for one upstream operation.
+ *
+ * CLOSED: calls go through and their outcome lands in a ring of the last
+ * {@code window} calls. Once {@code minimumCalls} are recorded and the failure
+ * rate or the slow-call rate reaches its threshold, the breaker opens.
+ * OPEN: calls fail fast with {@link CircuitOpenException} for {@code openFor}.
+ * HALF_OPEN: up to {@code halfOpenCalls} probes are let through; all of them
+ * succeeding closes the breaker, any failure reopens it.
+ *
+ * 4xx answers (unknown location etc.) are the caller's problem and count as success,
+ * except the provider refusing us (429 rate limit, 401/403 key or quota), which
+ * counts as a failure; calls refused by {@link UpstreamQuota} are not counted at all.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    public record Settings(int window, int minimumCalls, double failureRateThreshold,
+                           double slowCallRateThreshold, Duration slowCallDuration,
+                           Duration openFor, int halfOpenCalls) {
+    }
+
+    private static final byte SUCCESS = 0, FAILURE = 1, SLOW = 2;
+
+    private final String operation;
+    private final Settings settings;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final byte[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slow;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesStarted;
+    private int probesSucceeded;
+
+    public CircuitBreaker(String operation, Settings settings) {
+        this.operation = operation;
+        this.settings = settings;
+        this.outcomes = new byte[settings.window()];
+    }
+
+    public <T> T call(Callable<T> upstream) throws Exception {
+        acquirePermission();
+
+        long start = System.nanoTime();
+        try {
+            T result = upstream.call();
+            record(System.nanoTime() - start, false);
+            return result;
+        } catch (HttpClientErrorException e) {
+            record(System.nanoTime() - start, refused(e));
+            throw e;
+        } catch (QuotaExhaustedException e) {
+            // refused locally, upstream never saw the call
+            release();
+            throw e;
+        } catch (Exception e) {
+            record(System.nanoTime() - start, true);
+            throw e;
+        }
+    }
+
+    /** the provider turning us away (rate limit, key or plan quota), as opposed to a bad request */
+    static boolean refused(HttpClientErrorException e) {
+        return e instanceof HttpClientErrorException.TooManyRequests
+                || e instanceof HttpClientErrorException.Unauthorized
+                || e instanceof HttpClientErrorException.Forbidden;
+    }
+
+    public State state() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String operation() {
+        return operation;
+    }
+
+    private void acquirePermission() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.currentTimeMillis() - openedAt < settings.openFor().toMillis()) {
+                    throw new CircuitOpenException(operation);
+                }
+                state = State.HALF_OPEN;
+                probesStarted = 0;
+                probesSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (probesStarted >= settings.halfOpenCalls()) throw new CircuitOpenException(operation);
+                probesStarted++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN && probesStarted > 0) probesStarted--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(long nanos, boolean failed) {
+        boolean isSlow = nanos >= settings.slowCallDuration().toNanos();
+
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (failed || isSlow) {
+                    open();
+                } else if (++probesSucceeded >= settings.halfOpenCalls()) {
+                    close();
+                }
+                return;
+            }
+            if (state == State.OPEN) return;
+
+            byte outcome = failed ? FAILURE : isSlow ? SLOW : SUCCESS;
+            if (recorded == outcomes.length) {
+                byte evicted = outcomes[next];
+                if (evicted == FAILURE) failures--;
+                else if (evicted == SLOW) slow--;
+            } else {
+                recorded++;
+            }
+            outcomes[next] = outcome;
+            next = (next + 1) % outcomes.length;
+            if (outcome == FAILURE) failures++;
+            else if (outcome == SLOW) slow++;
+
+            if (recorded >= settings.minimumCalls()
+                    && (failures * 100.0 / recorded >= settings.failureRateThreshold()
+                        || slow * 100.0 / recorded >= settings.slowCallRateThreshold())) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.currentTimeMillis();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slow = 0;
+    }
+}
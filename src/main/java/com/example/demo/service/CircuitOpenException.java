@@ -0,0 +1,13 @@
+package com.example.demo.service;
+
+/**
+ * Thrown instead of calling upstream while the operation's circuit breaker is open.
+ */
+public class CircuitOpenException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public CircuitOpenException(String operation) {
+        super("Weather provider circuit open for " + operation);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.demo.service;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * In-memory prefix index for city autocomplete.
+ *
+ * Names are accent-folded and lowercased ("São Paulo" -> "sao paulo") and kept in
+ * a sorted skip list, so a prefix query is a range scan. The index holds the bundled
+ * gazetteer only; upstream search.json is asked when nothing local matches, and its
+ * answers are remembered per query (least recently used dropped past
+ * weatherapi.cities.remote-max) in upstream order, since they carry no population
+ * to rank against the gazetteer.
+ *
+ * The same cities are also bucketed by position ({@link GridIndex}) for map
+ * viewport queries.
+ */
+@Service
+public class CityIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /** prefix scans stop after this many candidates before ranking */
+    private static final int MAX_SCAN = 500;
+
+    private final ConcurrentSkipListMap<String, City> cities = new ConcurrentSkipListMap<>();
+    private final GridIndex<City> grid = new GridIndex<>();
+
+    private final Map<String, List<City>> remote;
+
+    private final WeatherApiClient weatherApiClient;
+
+    @Value("${weatherapi.cities.gazetteer:classpath:gazetteer/cities.csv}")
+    private Resource gazetteer;
+
+    public CityIndex(WeatherApiClient weatherApiClient,
+                     @Value("${weatherapi.cities.remote-max:1000}") int remoteMax) {
+        this.weatherApiClient = weatherApiClient;
+        this.remote = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, List<City>> eldest) {
+                return size() > remoteMax;
+            }
+        };
+    }
+
+    @PostConstruct
+    void load() throws Exception {
+        if (!gazetteer.exists()) return;
+
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(gazetteer.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String[] f = line.split(",");
+                add(new City(f[0], f[1], f[2],
+                        Double.parseDouble(f[3]), Double.parseDouble(f[4]), Long.parseLong(f[5])));
+            }
+        }
+    }
+
+    /** Local matches first; upstream search.json only when the index has none. */
+    public List<City> search(String q, int limit) throws Exception {
+        List<City> local = prefix(q, limit);
+        if (!local.isEmpty()) return local;
+
+        String key = fold(q);
+        List<City> found;
+        synchronized (remote) {
+            found = remote.get(key);
+        }
+        if (found == null) {
+            City[] results = weatherApiClient.search(q, City[].class);
+            if (results == null) return List.of();
+
+            found = Arrays.stream(results).filter(city -> city.name() != null).toList();
+            synchronized (remote) {
+                remote.put(key, found);
+            }
+        }
+        return found.size() > limit ? found.subList(0, limit) : found;
+    }
+
+    /** Cities whose folded name starts with the folded query, most populous first. */
+    public List<City> prefix(String q, int limit) {
+        String prefix = fold(q);
+        if (prefix.isEmpty()) return List.of();
+
+        List<City> matches = new ArrayList<>();
+        for (City city : cities.subMap(prefix, true, prefix + Character.MAX_VALUE, true).values()) {
+            matches.add(city);
+            if (matches.size() >= MAX_SCAN) break;
+        }
+        matches.sort(Comparator.comparingLong(City::population).reversed());
+        return matches.size() > limit ? matches.subList(0, limit) : matches;
+    }
+
+    public void add(City city) {
+        // same name, country and rough position is the same place whatever the source
+        String key = fold(city.name()) + "|" + fold(city.country())
+                + "|" + Math.round(city.lat()) + "|" + Math.round(city.lon());
+        if (cities.putIfAbsent(key, city) == null) {
+            grid.add(city.lat(), city.lon(), city);
+        }
+    }
+
+    /** Cities inside the box, in no particular order; west > east crosses the antimeridian. */
+    public List<City> within(double south, double west, double north, double east) {
+        return grid.within(south, west, north, east).stream().map(GridIndex.Point::value).toList();
+    }
+
+    public Iterable<City> all() {
+        return cities.values();
+    }
+
+    public int size() {
+        return cities.size();
+    }
+
+    public static String fold(String s) {
+        if (s == null) return "";
+        String decomposed = Normalizer.normalize(s.trim(), Normalizer.Form.NFD);
+        return MARKS.matcher(decomposed).replaceAll("").replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    public record City(String name, String region, String country, double lat, double lon, long population) {
+
+        public String label() {
+            return name + ", " + country;
+        }
+    }
+}
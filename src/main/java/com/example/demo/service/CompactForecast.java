@@ -0,0 +1,268 @@
+package com.example.demo.service;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Locale;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * A forecast payload as the forecast cache holds it and the forecast endpoints
+ * read it: every numeric field of the daily and hourly series ({@link Day},
+ * {@link Hour}) is one primitive array over the days or hours, and conditions
+ * are shared {@link ConditionDictionary} instances. A cached location costs a
+ * few arrays instead of a node tree per hour, and endpoints build their DTOs
+ * straight from the arrays.
+ *
+ * The location and current blocks are small and irregular and stay as nodes
+ * ({@link #head()}). Numbers remember whether upstream wrote them with a
+ * fraction, so {@link #dayNumber} gives 11 back as 11 and 11.0 as 11.0.
+ * {@link #tree()} rebuilds the payload for snapshots; nothing keeps it.
+ */
+public final class CompactForecast {
+
+    /** numeric fields of a forecast day's "day" block */
+    public enum Day {
+        MAXTEMP_C, MAXTEMP_F, MINTEMP_C, MINTEMP_F, AVGTEMP_C, AVGTEMP_F,
+        MAXWIND_MPH, MAXWIND_KPH, TOTALPRECIP_MM, TOTALPRECIP_IN, TOTALSNOW_CM,
+        AVGVIS_KM, AVGVIS_MILES, AVGHUMIDITY,
+        DAILY_WILL_IT_RAIN, DAILY_CHANCE_OF_RAIN, DAILY_WILL_IT_SNOW, DAILY_CHANCE_OF_SNOW, UV;
+
+        final String field = name().toLowerCase(Locale.ROOT);
+    }
+
+    /** numeric fields of an hour of the first day, the ones {@link ForecastPayloadReader} keeps */
+    public enum Hour {
+        TEMP_C, TEMP_F, FEELSLIKE_C, FEELSLIKE_F, HUMIDITY, WIND_KPH, CHANCE_OF_RAIN;
+
+        final String field = name().toLowerCase(Locale.ROOT);
+    }
+
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    private final ObjectNode head;
+    private final int days;
+
+    private final String[] dates;
+    private final Numbers dateEpochs;
+    private final Numbers[] dayFields;
+    private final ConditionDictionary.Condition[] dayConditions;
+
+    /* hours of the first day only */
+    private final String[] times;
+    private final Numbers timeEpochs;
+    private final Numbers[] hourFields;
+    private final ConditionDictionary.Condition[] hourConditions;
+
+    private CompactForecast(ObjectNode head, int days, String[] dates, Numbers dateEpochs, Numbers[] dayFields,
+                            ConditionDictionary.Condition[] dayConditions, String[] times, Numbers timeEpochs,
+                            Numbers[] hourFields, ConditionDictionary.Condition[] hourConditions) {
+        this.head = head;
+        this.days = days;
+        this.dates = dates;
+        this.dateEpochs = dateEpochs;
+        this.dayFields = dayFields;
+        this.dayConditions = dayConditions;
+        this.times = times;
+        this.timeEpochs = timeEpochs;
+        this.hourFields = hourFields;
+        this.hourConditions = hourConditions;
+    }
+
+    /** copies what the endpoints read out of the payload; the payload itself is not kept */
+    public static CompactForecast of(JsonNode payload) {
+        ObjectNode head = NODES.objectNode();
+        if (payload.has("location")) head.set("location", payload.get("location"));
+        if (payload.has("current")) head.set("current", payload.get("current"));
+
+        JsonNode forecastDays = payload.path("forecast").path("forecastday");
+        int days = forecastDays.isArray() ? forecastDays.size() : 0;
+        String[] dates = new String[days];
+        Numbers dateEpochs = new Numbers(days);
+        Numbers[] dayFields = Numbers.columns(Day.values().length, days);
+        ConditionDictionary.Condition[] dayConditions = new ConditionDictionary.Condition[days];
+        for (int d = 0; d < days; d++) {
+            JsonNode forecastDay = forecastDays.get(d);
+            JsonNode day = forecastDay.path("day");
+            dates[d] = forecastDay.path("date").textValue();
+            dateEpochs.set(d, forecastDay.get("date_epoch"));
+            for (Day field : Day.values()) dayFields[field.ordinal()].set(d, day.get(field.field));
+            dayConditions[d] = condition(day.path("condition"));
+        }
+
+        JsonNode hourNodes = days > 0 ? forecastDays.get(0).path("hour") : NODES.missingNode();
+        int hours = hourNodes.isArray() ? hourNodes.size() : 0;
+        String[] times = new String[hours];
+        Numbers timeEpochs = new Numbers(hours);
+        Numbers[] hourFields = Numbers.columns(Hour.values().length, hours);
+        ConditionDictionary.Condition[] hourConditions = new ConditionDictionary.Condition[hours];
+        for (int h = 0; h < hours; h++) {
+            JsonNode hour = hourNodes.get(h);
+            times[h] = hour.path("time").textValue();
+            timeEpochs.set(h, hour.get("time_epoch"));
+            for (Hour field : Hour.values()) hourFields[field.ordinal()].set(h, hour.get(field.field));
+            hourConditions[h] = condition(hour.path("condition"));
+        }
+
+        return new CompactForecast(head, days, dates, dateEpochs, dayFields, dayConditions,
+                times, timeEpochs, hourFields, hourConditions);
+    }
+
+    /** the location and current blocks, as current.json returns them */
+    public JsonNode head() {
+        return head;
+    }
+
+    /** the first {@code days} days (with the hours of the first), sharing these arrays */
+    public CompactForecast limit(int days) {
+        if (days >= this.days) return this;
+        return new CompactForecast(head, Math.max(0, days), dates, dateEpochs, dayFields, dayConditions,
+                times, timeEpochs, hourFields, hourConditions);
+    }
+
+    /* ================= days ================= */
+
+    public int days() {
+        return days;
+    }
+
+    public String date(int day) {
+        return dates[day];
+    }
+
+    /** date_epoch in upstream's numeric type; null when missing */
+    public Number dateEpoch(int day) {
+        return dateEpochs.number(day);
+    }
+
+    /** NaN when upstream left the field out */
+    public double day(int day, Day field) {
+        return dayFields[field.ordinal()].values[day];
+    }
+
+    /** in upstream's numeric type (11 stays 11, 11.0 stays 11.0); null when missing */
+    public Number dayNumber(int day, Day field) {
+        return dayFields[field.ordinal()].number(day);
+    }
+
+    public String dayCondition(int day) {
+        return dayConditions[day] != null ? dayConditions[day].text() : null;
+    }
+
+    /** the upstream icon URL */
+    public String dayIcon(int day) {
+        return dayConditions[day] != null ? dayConditions[day].icon() : null;
+    }
+
+    /* ================= hours of the first day ================= */
+
+    public int hours() {
+        return days > 0 ? times.length : 0;
+    }
+
+    /** "2025-10-18 00:00" local time */
+    public String time(int hour) {
+        return times[hour];
+    }
+
+    /** NaN when upstream left the field out */
+    public double hour(int hour, Hour field) {
+        return hourFields[field.ordinal()].values[hour];
+    }
+
+    public String hourCondition(int hour) {
+        return hourConditions[hour] != null ? hourConditions[hour].text() : null;
+    }
+
+    /** the upstream icon URL */
+    public String hourIcon(int hour) {
+        return hourConditions[hour] != null ? hourConditions[hour].icon() : null;
+    }
+
+    /* ================= as JSON ================= */
+
+    /** the payload rebuilt from the arrays, in the shape {@link ForecastPayloadReader} returns */
+    public JsonNode tree() {
+        ObjectNode root = NODES.objectNode();
+        root.setAll(head);
+        ArrayNode forecastDays = root.putObject("forecast").putArray("forecastday");
+        for (int d = 0; d < days; d++) {
+            ObjectNode forecastDay = forecastDays.addObject();
+            if (dates[d] != null) forecastDay.put("date", dates[d]);
+            dateEpochs.write(forecastDay, "date_epoch", d);
+
+            ObjectNode day = forecastDay.putObject("day");
+            for (Day field : Day.values()) dayFields[field.ordinal()].write(day, field.field, d);
+            write(day, dayConditions[d]);
+
+            if (d > 0 || times.length == 0) continue;
+            ArrayNode hours = forecastDay.putArray("hour");
+            for (int h = 0; h < times.length; h++) {
+                ObjectNode hour = hours.addObject();
+                timeEpochs.write(hour, "time_epoch", h);
+                if (times[h] != null) hour.put("time", times[h]);
+                for (Hour field : Hour.values()) hourFields[field.ordinal()].write(hour, field.field, h);
+                write(hour, hourConditions[h]);
+            }
+        }
+        return root;
+    }
+
+    private static ConditionDictionary.Condition condition(JsonNode node) {
+        if (!node.isObject()) return null;
+        return ConditionDictionary.SHARED.intern(
+                node.path("text").textValue(), node.path("icon").textValue(), node.path("code").asInt());
+    }
+
+    private static void write(ObjectNode node, ConditionDictionary.Condition condition) {
+        if (condition == null) return;
+        ObjectNode out = node.putObject("condition");
+        out.put("text", condition.text());
+        out.put("icon", condition.icon());
+        out.put("code", condition.code());
+    }
+
+    /** one numeric field over the rows: NaN where missing, {@code whole} where upstream wrote an integer */
+    private static final class Numbers {
+        final double[] values;
+        final BitSet whole;
+
+        Numbers(int rows) {
+            values = new double[rows];
+            Arrays.fill(values, Double.NaN);
+            whole = new BitSet(rows);
+        }
+
+        static Numbers[] columns(int fields, int rows) {
+            Numbers[] columns = new Numbers[fields];
+            for (int f = 0; f < fields; f++) columns[f] = new Numbers(rows);
+            return columns;
+        }
+
+        void set(int row, JsonNode node) {
+            if (node == null || !node.isNumber()) return;
+            values[row] = node.doubleValue();
+            if (node.isIntegralNumber() && node.canConvertToLong()) whole.set(row);
+        }
+
+        Number number(int row) {
+            double value = values[row];
+            if (Double.isNaN(value)) return null;
+            if (!whole.get(row)) return value;
+            long exact = (long) value;
+            return exact == (int) exact ? (Number) (int) exact : (Number) exact;
+        }
+
+        void write(ObjectNode node, String field, int row) {
+            switch (number(row)) {
+                case null -> { }
+                case Integer i -> node.put(field, i);
+                case Long l -> node.put(field, l);
+                case Number n -> node.put(field, n.doubleValue());
+            }
+        }
+    }
+}
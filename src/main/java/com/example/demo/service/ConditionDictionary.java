@@ -0,0 +1,39 @@
+package com.example.demo.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns upstream condition blocks ({text, icon, code}) as shared instances.
+ *
+ * WeatherAPI has a few dozen condition codes, each with a day and a night icon
+ * (times the languages in use), so every cached series can point at one shared
+ * {@link Condition} per distinct block instead of carrying the same strings
+ * once per hour. Past {@link #MAX_SIZE} entries {@link #intern} stops
+ * remembering and hands out unshared instances.
+ */
+final class ConditionDictionary {
+
+    static final int MAX_SIZE = Short.MAX_VALUE;
+
+    static final ConditionDictionary SHARED = new ConditionDictionary();
+
+    record Condition(String text, String icon, int code) {}
+
+    private final Map<Condition, Condition> conditions = new ConcurrentHashMap<>();
+
+    /** the shared instance equal to the block; a new one once the dictionary is full */
+    Condition intern(String text, String icon, int code) {
+        Condition condition = new Condition(text, icon, code);
+        Condition shared = conditions.get(condition);
+        if (shared != null) return shared;
+        if (conditions.size() >= MAX_SIZE) return condition;
+
+        shared = conditions.putIfAbsent(condition, condition);
+        return shared != null ? shared : condition;
+    }
+
+    int size() {
+        return conditions.size();
+    }
+}
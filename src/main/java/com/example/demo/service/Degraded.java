@@ -0,0 +1,49 @@
+package com.example.demo.service;
+
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+/**
+ * Marks the current HTTP response as served from last-known-good data
+ * because upstream could not be used (circuit open, error, quota).
+ */
+public final class Degraded {
+
+    public static final String HEADER = "X-Weather-Degraded";
+
+    private Degraded() {
+    }
+
+    /* set while {@link #collect} runs work on this thread */
+    private static final ThreadLocal<String[]> COLLECTED = new ThreadLocal<>();
+
+    public static void mark(String reason) {
+        String[] collected = COLLECTED.get();
+        if (collected != null) {
+            collected[0] = reason;
+            return;
+        }
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && attributes.getResponse() != null) {
+            attributes.getResponse().setHeader(HEADER, reason);
+        }
+    }
+
+    /**
+     * Runs {@code work} on this thread and returns the reason it marked, or
+     * null, instead of setting the header; for work that runs off the request
+     * thread, where there is no response to mark.
+     */
+    public static String collect(Runnable work) {
+        String[] outer = COLLECTED.get();
+        String[] collected = new String[1];
+        COLLECTED.set(collected);
+        try {
+            work.run();
+        } finally {
+            if (outer != null) COLLECTED.set(outer);
+            else COLLECTED.remove();
+        }
+        return collected[0];
+    }
+}
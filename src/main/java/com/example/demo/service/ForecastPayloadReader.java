@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Streams a forecast.json body straight off the socket and keeps only what the
+ * endpoints read. Unused subtrees are skipped token by token and never
+ * allocated:
+ * - astro, alerts and air_quality blocks
+ * - hour arrays for every day but the first (only /api/hourly uses them)
+ * - hour fields outside {@link #HOUR_FIELDS}
+ */
+final class ForecastPayloadReader {
+
+    static final Set<String> HOUR_FIELDS = Set.of(
+            "time", "time_epoch",
+            "temp_c", "temp_f", "feelslike_c", "feelslike_f",
+            "humidity", "wind_kph", "chance_of_rain", "condition"
+    );
+
+    private final ObjectMapper objectMapper;
+
+    ForecastPayloadReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    JsonNode read(InputStream body) throws IOException {
+        try (JsonParser p = objectMapper.createParser(body)) {
+            if (p.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Unexpected forecast payload");
+            }
+
+            ObjectNode root = objectMapper.createObjectNode();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                switch (field) {
+                    case "location" -> root.set(field, objectMapper.readTree(p));
+                    case "current" -> root.set(field, readObject(p, "air_quality"));
+                    case "forecast" -> root.set(field, readForecast(p));
+                    default -> p.skipChildren();
+                }
+            }
+            return root;
+        }
+    }
+
+    private ObjectNode readForecast(JsonParser p) throws IOException {
+        ObjectNode forecast = objectMapper.createObjectNode();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            if (p.nextToken() == JsonToken.START_ARRAY && "forecastday".equals(field)) {
+                ArrayNode days = forecast.putArray(field);
+                int index = 0;
+                while (p.nextToken() == JsonToken.START_OBJECT) {
+                    days.add(readDay(p, index++));
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+        return forecast;
+    }
+
+    private ObjectNode readDay(JsonParser p, int index) throws IOException {
+        ObjectNode day = objectMapper.createObjectNode();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            switch (field) {
+                case "date", "date_epoch" -> day.set(field, objectMapper.readTree(p));
+                case "day" -> day.set(field, readObject(p, "air_quality"));
+                case "hour" -> {
+                    if (index == 0 && p.currentToken() == JsonToken.START_ARRAY) day.set(field, readHours(p));
+                    else p.skipChildren();
+                }
+                default -> p.skipChildren();
+            }
+        }
+        return day;
+    }
+
+    private ArrayNode readHours(JsonParser p) throws IOException {
+        ArrayNode hours = objectMapper.createArrayNode();
+        while (p.nextToken() == JsonToken.START_OBJECT) {
+            ObjectNode hour = hours.addObject();
+            while (p.nextToken() == JsonToken.FIELD_NAME) {
+                String field = p.currentName();
+                p.nextToken();
+                if (HOUR_FIELDS.contains(field)) hour.set(field, objectMapper.readTree(p));
+                else p.skipChildren();
+            }
+        }
+        return hours;
+    }
+
+    /** copies an object, skipping the named child */
+    private JsonNode readObject(JsonParser p, String skip) throws IOException {
+        if (p.currentToken() != JsonToken.START_OBJECT) return objectMapper.readTree(p);
+
+        ObjectNode node = objectMapper.createObjectNode();
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            p.nextToken();
+            if (skip.equals(field)) p.skipChildren();
+            else node.set(field, objectMapper.readTree(p));
+        }
+        return node;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Points bucketed into one-degree lat/lon cells, for bounding-box lookups.
+ *
+ * A viewport query visits only the cells it overlaps; for views larger than
+ * the populated part of the index it walks the populated cells instead. Points
+ * are only ever added (cities and resolved locations do not move).
+ */
+final class GridIndex<T> {
+
+    record Point<T>(double lat, double lon, T value) {
+    }
+
+    private final Map<Long, Queue<Point<T>>> cells = new ConcurrentHashMap<>();
+
+    void add(double lat, double lon, T value) {
+        cells.computeIfAbsent(cell(row(lat), column(lon)), c -> new ConcurrentLinkedQueue<>())
+                .add(new Point<>(lat, lon, value));
+    }
+
+    /** points inside the box; west > east means the box crosses the antimeridian */
+    List<Point<T>> within(double south, double west, double north, double east) {
+        List<Point<T>> found = new ArrayList<>();
+        if (west > east) {
+            collect(south, west, north, 180, found);
+            collect(south, -180, north, east, found);
+        } else {
+            collect(south, west, north, east, found);
+        }
+        return found;
+    }
+
+    private void collect(double south, double west, double north, double east, List<Point<T>> found) {
+        int rowFrom = row(south), rowTo = row(north);
+        int columnFrom = column(west), columnTo = column(east);
+
+        if ((long) (rowTo - rowFrom + 1) * (columnTo - columnFrom + 1) > cells.size()) {
+            for (Queue<Point<T>> cell : cells.values()) {
+                collect(cell, south, west, north, east, found);
+            }
+            return;
+        }
+
+        for (int row = rowFrom; row <= rowTo; row++) {
+            for (int column = columnFrom; column <= columnTo; column++) {
+                Queue<Point<T>> cell = cells.get(cell(row, column));
+                if (cell != null) collect(cell, south, west, north, east, found);
+            }
+        }
+    }
+
+    private static <T> void collect(Queue<Point<T>> cell, double south, double west, double north, double east,
+                                    List<Point<T>> found) {
+        for (Point<T> p : cell) {
+            if (p.lat() >= south && p.lat() <= north && p.lon() >= west && p.lon() <= east) found.add(p);
+        }
+    }
+
+    private static int row(double lat) {
+        return (int) Math.floor(Math.max(-90, Math.min(90, lat)));
+    }
+
+    private static int column(double lon) {
+        return (int) Math.floor(Math.max(-180, Math.min(180, lon)));
+    }
+
+    private static long cell(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hedged reads for one upstream operation.
+ *
+ * The first attempt runs on its own virtual thread. If it has not answered
+ * within the hedge delay (the configured percentile of this operation's recent
+ * latencies, at least {@code minDelay}), a second attempt is started; the
+ * first to succeed wins and the other is cancelled, which interrupts it and
+ * closes its socket. A failure only counts once both attempts have failed,
+ * and then it is the first attempt's failure that is thrown.
+ *
+ * Hedges are capped at {@code maxRate} per first attempt (a bucket that earns
+ * that fraction of a hedge per call, so bursts stay small) and are not sent
+ * while {@link UpstreamQuota#isLow()}; then the call just waits for its first
+ * attempt. Both attempts take their quota token with the caller's priority.
+ * Until {@code minSamples} latencies are known nothing is hedged.
+ */
+public class Hedger {
+
+    public record Settings(boolean enabled, double percentile, Duration minDelay,
+                           double maxRate, int window, int minSamples) {
+    }
+
+    /** outcomes reported to {@link UpstreamHedging} */
+    interface Listener {
+        void hedged(boolean won);
+
+        void skipped(String reason);
+    }
+
+    private static final double MAX_BUCKET = 10;
+
+    private final Settings settings;
+    private final UpstreamQuota quota;
+    private final ExecutorService executor;
+    private final Listener listener;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long[] latencies;
+    private int recorded;
+    private int next;
+    private volatile long delayNanos = -1;
+    private double bucket;
+
+    Hedger(Settings settings, UpstreamQuota quota, ExecutorService executor, Listener listener) {
+        this.settings = settings;
+        this.quota = quota;
+        this.executor = executor;
+        this.listener = listener;
+        this.latencies = new long[settings.window()];
+    }
+
+    public <T> T call(Callable<T> attempt) throws Exception {
+        if (!settings.enabled()) return attempt.call();
+
+        long delay = delayNanos;
+        if (delay < 0) return timed(attempt).call();
+
+        earn();
+        CompletionService<T> attempts = new ExecutorCompletionService<>(executor);
+        Future<T> first = attempts.submit(quota.withCurrentPriority(timed(attempt)));
+        Future<T> second = null;
+        try {
+            Future<T> done = attempts.poll(delay, TimeUnit.NANOSECONDS);
+            if (done != null) return result(done);
+
+            if (!spend()) {
+                listener.skipped("rate");
+                return result(first);
+            }
+            if (quota.isLow()) {
+                listener.skipped("quota");
+                return result(first);
+            }
+            second = attempts.submit(quota.withCurrentPriority(timed(attempt)));
+
+            Exception failure = null;
+            for (int i = 0; i < 2; i++) {
+                Future<T> finished = attempts.take();
+                try {
+                    T value = result(finished);
+                    listener.hedged(finished == second);
+                    return value;
+                } catch (Exception e) {
+                    if (failure == null || finished == first) failure = e;
+                }
+            }
+            listener.hedged(false);
+            throw failure;
+
+        } finally {
+            first.cancel(true);
+            if (second != null) second.cancel(true);
+        }
+    }
+
+    /** current hedge delay in milliseconds, -1 while there are too few samples */
+    public double delayMillis() {
+        long delay = delayNanos;
+        return delay < 0 ? -1 : delay / 1e6;
+    }
+
+    /* ================= latency window ================= */
+
+    private <T> Callable<T> timed(Callable<T> attempt) {
+        return () -> {
+            long start = System.nanoTime();
+            T value = attempt.call();
+            record(System.nanoTime() - start);
+            return value;
+        };
+    }
+
+    private void record(long nanos) {
+        lock.lock();
+        try {
+            latencies[next] = nanos;
+            next = (next + 1) % latencies.length;
+            if (recorded < latencies.length) recorded++;
+
+            // re-derive the delay every few samples rather than sorting on every call
+            if (recorded >= settings.minSamples() && (next % 8 == 0 || delayNanos < 0)) {
+                long[] sorted = Arrays.copyOf(latencies, recorded);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(settings.percentile() / 100 * recorded) - 1;
+                long percentile = sorted[Math.max(0, Math.min(recorded - 1, index))];
+                delayNanos = Math.max(settings.minDelay().toNanos(), percentile);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* ================= hedge budget ================= */
+
+    private void earn() {
+        lock.lock();
+        try {
+            bucket = Math.min(MAX_BUCKET, bucket + settings.maxRate());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean spend() {
+        lock.lock();
+        try {
+            if (bucket < 1) return false;
+            bucket -= 1;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <T> T result(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Condition icons, fetched once from weatherapi.icons.source-url and kept in
+ * memory (they never change for a given path), so browsers can load them from
+ * GET /api/icons/... instead of the third-party CDN.
+ *
+ * When weatherapi.icons.public-url is set (the absolute URL that endpoint is
+ * reachable at), responses point their icons there; when empty they keep the
+ * CDN URLs. Either way each distinct upstream icon maps to one shared String,
+ * so mapping a payload allocates no icon strings.
+ */
+@Service
+public class IconCache {
+
+    /** "//cdn.weatherapi.com/weather/64x64/day/113.png" -> 64x64, day/113 */
+    private static final Pattern UPSTREAM_ICON =
+            Pattern.compile("^(?:https?:)?//cdn\\.weatherapi\\.com/weather/(64x64|128x128)/((?:day|night)/\\d{3})\\.png$");
+
+    private static final Duration IMMUTABLE = Duration.ofDays(365);
+
+    public record Icon(byte[] png, String etag) {}
+
+    private final RestTemplate restTemplate;
+    private final String sourceUrl;
+    private final String publicUrl;
+    private final int maxEntries;
+    private final UpstreamCache<Icon> icons;
+    private final Map<String, String> publicIcons = new ConcurrentHashMap<>();
+
+    public IconCache(RestTemplate restTemplate,
+                     @Value("${weatherapi.icons.source-url:https://cdn.weatherapi.com/weather/}") String sourceUrl,
+                     @Value("${weatherapi.icons.public-url:}") String publicUrl,
+                     @Value("${weatherapi.icons.max-entries:512}") int maxEntries) {
+        this.restTemplate = restTemplate;
+        this.sourceUrl = withSlash(sourceUrl);
+        this.publicUrl = publicUrl.isBlank() ? "" : withSlash(publicUrl);
+        this.maxEntries = maxEntries;
+        this.icons = new UpstreamCache<>(maxEntries);
+    }
+
+    /** the PNG for e.g. ("64x64", "day/113"), fetched on first use */
+    public Icon get(String size, String path) throws Exception {
+        String key = size + "/" + path;
+        return icons.get(key, IMMUTABLE, () -> {
+            byte[] png = restTemplate.getForObject(sourceUrl + key + ".png", byte[].class);
+            if (png == null || png.length == 0) throw new IllegalStateException("Empty icon " + key);
+            return new Icon(png, "\"" + DigestUtils.md5DigestAsHex(png) + "\"");
+        });
+    }
+
+    /** where clients can load the icon at {@code key} when this cache cannot serve it */
+    public String sourceUrl(String size, String path) {
+        return sourceUrl + size + "/" + path + ".png";
+    }
+
+    /** prefix that turns a shortened "day/113" icon back into a URL */
+    public String iconBase(String size) {
+        return (publicUrl.isEmpty() ? "https://cdn.weatherapi.com/weather/" : publicUrl) + size + "/";
+    }
+
+    /**
+     * The icon URL responses should carry for an upstream one: on
+     * weatherapi.icons.public-url when set, else the https CDN URL.
+     */
+    public String publicIcon(String upstream) {
+        String known = publicIcons.get(upstream);
+        if (known != null) return known;
+
+        String icon;
+        Matcher m = UPSTREAM_ICON.matcher(upstream);
+        if (!publicUrl.isEmpty() && m.matches()) {
+            icon = publicUrl + m.group(1) + "/" + m.group(2) + ".png";
+        } else {
+            icon = upstream.startsWith("//") ? "https:" + upstream : upstream;
+        }
+        // a few hundred icons at most; anything past that is not worth remembering
+        if (publicIcons.size() < maxEntries) publicIcons.putIfAbsent(upstream, icon);
+        return publicIcons.getOrDefault(upstream, icon);
+    }
+
+    /** {@link #publicIcon} when weatherapi.icons.public-url is set; as is otherwise, like {@link #rewrite} */
+    public String rewriteIcon(String upstream) {
+        return publicUrl.isEmpty() || upstream == null ? upstream : publicIcon(upstream);
+    }
+
+    /** copy of the payload with every condition icon replaced by its {@link #publicIcon}; as is when nothing changes */
+    public JsonNode rewrite(JsonNode payload) {
+        if (publicUrl.isEmpty()) return payload;
+        JsonNode copy = payload.deepCopy();
+        rewriteIcons(copy);
+        return copy;
+    }
+
+    private void rewriteIcons(JsonNode node) {
+        if (node instanceof ObjectNode object && object.get("icon") != null && object.get("icon").isTextual()) {
+            object.put("icon", publicIcon(object.get("icon").textValue()));
+        }
+        node.forEach(this::rewriteIcons);
+    }
+
+    private static String withSlash(String url) {
+        return url.endsWith("/") ? url : url + "/";
+    }
+}
@@ -0,0 +1,330 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Pushes current conditions to Server-Sent Events subscribers.
+ *
+ * Subscribers are grouped into one topic per location key; each topic has a
+ * single poller, however many clients listen, and its result is rendered once
+ * and fanned out to all of them. An event goes out only when the conditions
+ * changed (new last_updated_epoch or different values); a client joining a
+ * topic gets the latest event straight away.
+ *
+ * Polls run with background quota priority, so streams never take budget kept
+ * for direct requests. A subscriber may watch at most weatherapi.live.max-locations
+ * and there are at most weatherapi.live.max-topics topics. A failing topic backs
+ * off (doubling its poll interval); a 4xx answer (unknown location) or
+ * weatherapi.live.max-failures failures in a row drop it, with an "unavailable"
+ * event to its subscribers, and a subscriber left with nothing is completed.
+ *
+ * Connections are servlet async requests, so an idle subscriber holds no
+ * thread: polls and sends run on virtual threads, and a comment heartbeat keeps
+ * idle connections from being dropped by proxies. The last subscriber leaving
+ * a topic stops its poller.
+ */
+@Service
+public class LiveConditions {
+
+    @FunctionalInterface
+    public interface Source {
+        /** location and current blocks for the query, as current.json returns them */
+        JsonNode poll(String query) throws Exception;
+    }
+
+    /** refused because weatherapi.live.max-topics locations are already being watched */
+    public static class TooManyTopicsException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        TooManyTopicsException(int maxTopics) {
+            super("Already watching " + maxTopics + " locations");
+        }
+    }
+
+    /* a failing topic waits at most this many poll intervals */
+    private static final int MAX_BACKOFF = 16;
+
+    private final Source source;
+    private final Function<String, String> keyOf;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry registry;
+    private final Duration pollInterval;
+    private final Duration timeout;
+    private final int maxLocations;
+    private final int maxTopics;
+    private final int maxFailures;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "live-conditions");
+        t.setDaemon(true);
+        return t;
+    });
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public LiveConditions(WeatherApiClient weatherApiClient,
+                          UpstreamQuota quota,
+                          ObjectMapper objectMapper,
+                          MeterRegistry registry,
+                          @Value("${weatherapi.live.poll-interval:60s}") Duration pollInterval,
+                          @Value("${weatherapi.live.heartbeat:25s}") Duration heartbeat,
+                          @Value("${weatherapi.live.timeout:30m}") Duration timeout,
+                          @Value("${weatherapi.live.max-locations:10}") int maxLocations,
+                          @Value("${weatherapi.live.max-topics:500}") int maxTopics,
+                          @Value("${weatherapi.live.max-failures:5}") int maxFailures) {
+        this(query -> quota.inBackground(() -> weatherApiClient.current(query)), weatherApiClient::locationKey,
+                objectMapper, registry, pollInterval, heartbeat, timeout, maxLocations, maxTopics, maxFailures);
+    }
+
+    LiveConditions(Source source, Function<String, String> keyOf, ObjectMapper objectMapper, MeterRegistry registry,
+                   Duration pollInterval, Duration heartbeat, Duration timeout,
+                   int maxLocations, int maxTopics, int maxFailures) {
+        this.source = source;
+        this.keyOf = keyOf;
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+        this.pollInterval = pollInterval;
+        this.timeout = timeout;
+        this.maxLocations = maxLocations;
+        this.maxTopics = maxTopics;
+        this.maxFailures = maxFailures;
+
+        scheduler.scheduleWithFixedDelay(this::heartbeat,
+                heartbeat.toMillis(), heartbeat.toMillis(), TimeUnit.MILLISECONDS);
+        Gauge.builder("weatherapi.live.subscribers", subscribers, Set::size).register(registry);
+        Gauge.builder("weatherapi.live.topics", topics, Map::size).register(registry);
+    }
+
+    /** latest rendered event of a topic; {@code signature} tells whether conditions changed */
+    private record Event(String id, String data, String signature) {
+    }
+
+    private final class Topic {
+        final String key;
+        final String query;
+        final Function<JsonNode, ?> view;
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        volatile Event last;
+        ScheduledFuture<?> poller;
+
+        /* only touched by the topic's poll, which never overlaps itself */
+        int failures;
+        long skipUntil;
+
+        Topic(String key, String query, Function<JsonNode, ?> view) {
+            this.key = key;
+            this.query = query;
+            this.view = view;
+        }
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final List<String> keys;
+
+        Subscriber(SseEmitter emitter, List<String> keys) {
+            this.emitter = emitter;
+            this.keys = keys;
+        }
+    }
+
+    public int maxLocations() {
+        return maxLocations;
+    }
+
+    /**
+     * Streams conditions for up to max-locations queries, each rendered through
+     * {@code view} (a topic keeps the view of the subscriber that opened it).
+     */
+    public SseEmitter subscribe(List<String> queries, Function<JsonNode, ?> view) {
+        Map<String, String> byKey = new LinkedHashMap<>();
+        queries.forEach(q -> byKey.putIfAbsent(keyOf.apply(q), q));
+        if (byKey.isEmpty() || byKey.size() > maxLocations) {
+            throw new IllegalArgumentException("Provide between 1 and " + maxLocations + " locations");
+        }
+
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, List.copyOf(byKey.keySet()));
+
+        Runnable leave = () -> unsubscribe(subscriber);
+        emitter.onCompletion(leave);
+        emitter.onTimeout(leave);
+        emitter.onError(e -> leave.run());
+
+        subscribers.add(subscriber);
+        for (Map.Entry<String, String> location : byKey.entrySet()) {
+            Topic topic = topics.compute(location.getKey(), (k, existing) -> {
+                if (existing == null && topics.size() >= maxTopics) return null;
+                Topic t = existing != null ? existing : new Topic(k, location.getValue(), view);
+                t.subscribers.add(subscriber);
+                if (t.poller == null) {
+                    t.poller = scheduler.scheduleWithFixedDelay(() -> workers.execute(() -> poll(t)),
+                            0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                return t;
+            });
+            if (topic == null) {
+                unsubscribe(subscriber);
+                throw new TooManyTopicsException(maxTopics);
+            }
+
+            Event last = topic.last;
+            if (last != null) workers.execute(() -> send(subscriber, last));
+        }
+        return emitter;
+    }
+
+    public int subscribers() {
+        return subscribers.size();
+    }
+
+    public int topics() {
+        return topics.size();
+    }
+
+    private void unsubscribe(Subscriber subscriber) {
+        if (!subscribers.remove(subscriber)) return;
+        for (String key : subscriber.keys) {
+            topics.computeIfPresent(key, (k, topic) -> {
+                topic.subscribers.remove(subscriber);
+                if (!topic.subscribers.isEmpty()) return topic;
+                topic.poller.cancel(false);
+                return null;
+            });
+        }
+    }
+
+    private void poll(Topic topic) {
+        if (System.currentTimeMillis() < topic.skipUntil) return;
+        try {
+            JsonNode conditions = source.poll(topic.query);
+            topic.failures = 0;
+            JsonNode current = conditions.path("current");
+            String signature = current.path("last_updated_epoch").asLong() + ":" + current.hashCode();
+
+            Event last = topic.last;
+            if (last != null && last.signature().equals(signature)) return;
+
+            Event event = new Event(topic.key + ":" + current.path("last_updated_epoch").asLong(),
+                    objectMapper.writeValueAsString(topic.view.apply(conditions)), signature);
+            topic.last = event;
+            for (Subscriber subscriber : topic.subscribers) {
+                workers.execute(() -> send(subscriber, event));
+            }
+        } catch (HttpClientErrorException e) {
+            // unknown location etc. will not get better; a provider refusal is just an outage
+            if (CircuitBreaker.refused(e)) backOff(topic, false);
+            else drop(topic, "rejected");
+        } catch (QuotaExhaustedException | CircuitOpenException e) {
+            // upstream was never asked; wait, but this says nothing about the location
+            backOff(topic, false);
+        } catch (Exception e) {
+            backOff(topic, true);
+        }
+    }
+
+    private void backOff(Topic topic, boolean counts) {
+        if (counts && ++topic.failures >= maxFailures) {
+            drop(topic, "failing");
+            return;
+        }
+        long intervals = Math.min(MAX_BACKOFF, 1L << Math.min(30, Math.max(1, topic.failures)));
+        topic.skipUntil = System.currentTimeMillis() + (intervals - 1) * pollInterval.toMillis();
+    }
+
+    /* stops the topic, tells its subscribers, and completes those left watching nothing */
+    private void drop(Topic topic, String reason) {
+        if (!topics.remove(topic.key, topic)) return;
+        topic.poller.cancel(false);
+        Counter.builder("weatherapi.live.dropped")
+                .description("Live topics stopped because their location kept failing")
+                .tag("reason", reason)
+                .register(registry)
+                .increment();
+
+        String data;
+        try {
+            data = objectMapper.writeValueAsString(Map.of("location", topic.query, "reason", reason));
+        } catch (IOException e) {
+            data = "{}";
+        }
+        for (Subscriber subscriber : topic.subscribers) {
+            try {
+                subscriber.emitter.send(SseEmitter.event()
+                        .name("unavailable")
+                        .data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                unsubscribe(subscriber);
+                continue;
+            }
+            if (subscriber.keys.stream().noneMatch(topics::containsKey)) {
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    private void send(Subscriber subscriber, Event event) {
+        try {
+            subscriber.emitter.send(SseEmitter.event()
+                    .name("conditions")
+                    .id(event.id())
+                    .data(event.data(), MediaType.APPLICATION_JSON));
+        } catch (IOException | IllegalStateException e) {
+            // client went away; completion callbacks may never fire for a dead socket
+            unsubscribe(subscriber);
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            workers.execute(() -> {
+                try {
+                    subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+                } catch (IOException | IllegalStateException e) {
+                    unsubscribe(subscriber);
+                }
+            });
+        }
+    }
+
+    /* before the web server's graceful shutdown, which would otherwise wait out every open stream */
+    @EventListener(ContextClosedEvent.class)
+    public void close() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+        for (Subscriber subscriber : List.copyOf(subscribers)) {
+            subscriber.emitter.complete();
+        }
+    }
+}
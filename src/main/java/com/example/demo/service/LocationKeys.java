@@ -0,0 +1,125 @@
+package com.example.demo.service;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Canonical cache keys for locations.
+ *
+ * Coordinate queries are snapped to a grid of weatherapi.location.grid degrees
+ * ({@link #snapQuery}, applied by {@link WeatherApiClient} to every query) before
+ * they become an upstream query, so GPS jitter between nearby users lands in
+ * the same cell. Every upstream payload names the point it resolved the query
+ * to ({@code location.lat/lon}); that pair is the canonical key, and each
+ * normalized query that resolved to it is remembered as an alias. "London",
+ * "london, uk" and the cell around it then share one cache entry.
+ *
+ * The canonical key is itself a valid upstream query, so background refresh
+ * can reload it directly. Canonical locations are also indexed by position so
+ * the map can find every place something has been fetched for.
+ */
+@Service
+public class LocationKeys {
+
+    private static final Pattern COORDINATES = Pattern.compile("(-?\\d{1,3}(?:\\.\\d+)?) ?, ?(-?\\d{1,3}(?:\\.\\d+)?)");
+
+    private final BigDecimal grid;
+    private final double step;
+    private final int maxAliases;
+    private final ConcurrentHashMap<String, String> aliases = new ConcurrentHashMap<>();
+    private final Set<String> located = ConcurrentHashMap.newKeySet();
+    private final GridIndex<String> positions = new GridIndex<>();
+
+    public LocationKeys(@Value("${weatherapi.location.grid:0.05}") double grid,
+                        @Value("${weatherapi.cache.max-entries:10000}") int maxAliases) {
+        if (grid <= 0) throw new IllegalArgumentException("weatherapi.location.grid must be positive");
+        this.grid = BigDecimal.valueOf(grid);
+        this.step = grid;
+        this.maxAliases = maxAliases;
+    }
+
+    /** "51.507351,-0.127758" -> "51.5,-0.15" with a 0.05 degree grid */
+    public String snap(double lat, double lon) {
+        double clamped = Math.max(-90, Math.min(90, lat));
+        double wrapped = ((lon + 180) % 360 + 360) % 360 - 180;
+        return cell(clamped) + "," + cell(wrapped);
+    }
+
+    /**
+     * A normalized "lat,lon" query snapped to the grid, unless it is already a
+     * known location or alias; any other query unchanged.
+     */
+    public String snapQuery(String query) {
+        if (located.contains(query) || aliases.containsKey(query)) return query;
+        Matcher m = COORDINATES.matcher(query);
+        if (!m.matches()) return query;
+        return snap(Double.parseDouble(m.group(1)), Double.parseDouble(m.group(2)));
+    }
+
+    /** the canonical key a normalized query is known to resolve to, or the query itself */
+    public String resolve(String query) {
+        return aliases.getOrDefault(query, query);
+    }
+
+    /**
+     * Records which location the payload for {@code query} resolved to.
+     * Returns the canonical key, or null when the payload names no location.
+     */
+    public String learn(String query, JsonNode payload) {
+        String canonical = canonical(payload);
+        if (canonical == null) return null;
+
+        if (located.size() < maxAliases && located.add(canonical)) {
+            JsonNode location = payload.path("location");
+            positions.add(location.path("lat").asDouble(), location.path("lon").asDouble(), canonical);
+        }
+
+        if (!canonical.equals(query) && !canonical.equals(aliases.put(query, canonical))
+                && aliases.size() > maxAliases) {
+            // aliases are only a shortcut; losing an arbitrary one costs a single refetch
+            Iterator<String> it = aliases.keySet().iterator();
+            if (it.hasNext()) aliases.remove(it.next());
+        }
+        return canonical;
+    }
+
+    /** an alias learned before a restart; ignored once max-entries aliases are known */
+    public void remember(String query, String canonical) {
+        if (!canonical.equals(query) && aliases.size() < maxAliases) aliases.putIfAbsent(query, canonical);
+    }
+
+    /** canonical keys of resolved locations inside the box; west > east crosses the antimeridian */
+    public List<String> within(double south, double west, double north, double east) {
+        return positions.within(south, west, north, east).stream().map(GridIndex.Point::value).toList();
+    }
+
+    public int aliases() {
+        return aliases.size();
+    }
+
+    /** "lat,lon" of the location block, or null when there is none */
+    public static String canonical(JsonNode payload) {
+        JsonNode lat = payload.path("location").get("lat");
+        JsonNode lon = payload.path("location").get("lon");
+        if (lat == null || lon == null || !lat.isNumber() || !lon.isNumber()) return null;
+        return plain(lat.decimalValue()) + "," + plain(lon.decimalValue());
+    }
+
+    private String cell(double degrees) {
+        return plain(BigDecimal.valueOf(Math.round(degrees / step)).multiply(grid));
+    }
+
+    private static String plain(BigDecimal value) {
+        return value.signum() == 0 ? "0" : value.stripTrailingZeros().toPlainString();
+    }
+}
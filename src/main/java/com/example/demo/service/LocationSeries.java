@@ -0,0 +1,260 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+
+/**
+ * Sliding-window statistics over one location's current readings.
+ *
+ * Readings sit once in a ring (time plus each metric in tenths); every window
+ * is a suffix of that ring, tracked by the sequence number of its oldest
+ * reading. Per window and metric an {@link Aggregate} keeps:
+ * - sum and count, for the mean
+ * - monotonic deques of candidate minima and maxima (amortized O(1))
+ * - a Fenwick tree over value bins, for percentiles in O(log bins)
+ * and all of them are updated as readings enter and leave the window, so
+ * adding a reading never rescans the window. Not thread-safe; callers lock.
+ */
+final class LocationSeries {
+
+    static final String[] METRICS = {"temp_c", "humidity", "wind_kph"};
+
+    /** one metric over one window, in the metric's own unit; percentiles in the order they were asked for */
+    record Summary(int samples, double min, double max, double mean, double[] percentiles) {
+    }
+
+    private final Window[] windows;
+
+    private long[] times = new long[16];
+    private short[][] values = new short[METRICS.length][16];
+    private long first;
+    private long next;
+
+    LocationSeries(Duration... spans) {
+        windows = new Window[spans.length];
+        for (int i = 0; i < spans.length; i++) windows[i] = new Window(spans[i].toSeconds());
+    }
+
+    /** false when the reading is not newer than the last one (the same reading fetched again) */
+    boolean add(long epochSecond, int[] tenths) {
+        if (next > first && epochSecond <= times[slot(next - 1)]) return false;
+
+        if (next - first == times.length) grow();
+        times[slot(next)] = epochSecond;
+        for (int m = 0; m < METRICS.length; m++) {
+            values[m][slot(next)] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, tenths[m]));
+        }
+        for (Window window : windows) window.add(next);
+        next++;
+        return true;
+    }
+
+    /** adds {@code later}'s readings, oldest first; like {@link #add}, those not newer than the last are skipped */
+    void addAll(LocationSeries later) {
+        int[] tenths = new int[METRICS.length];
+        for (long seq = later.first; seq < later.next; seq++) {
+            for (int m = 0; m < METRICS.length; m++) tenths[m] = later.value(m, seq);
+            add(later.times[later.slot(seq)], tenths);
+        }
+    }
+
+    /** drops readings older than each window as of {@code nowSecond} */
+    void expire(long nowSecond) {
+        long oldest = next;
+        for (Window window : windows) {
+            window.expire(nowSecond);
+            oldest = Math.min(oldest, window.head);
+        }
+        first = oldest;
+    }
+
+    int size() {
+        return (int) (next - first);
+    }
+
+    long lastEpochSecond() {
+        return next > first ? times[slot(next - 1)] : 0;
+    }
+
+    /** window {@code w}, metric {@code m}; percentiles in percent (50 = median); null when the window is empty */
+    Summary summary(int w, int m, double[] percentiles) {
+        Aggregate aggregate = windows[w].metrics[m];
+        if (aggregate.count == 0) return null;
+
+        double[] ranks = new double[percentiles.length];
+        for (int i = 0; i < percentiles.length; i++) {
+            int rank = Math.max(1, (int) Math.ceil(percentiles[i] / 100 * aggregate.count));
+            ranks[i] = aggregate.histogram.valueAt(Math.min(rank, aggregate.count)) / 10.0;
+        }
+        return new Summary(aggregate.count,
+                value(m, aggregate.minima.first()) / 10.0,
+                value(m, aggregate.maxima.first()) / 10.0,
+                (double) aggregate.sum / aggregate.count / 10.0,
+                ranks);
+    }
+
+    /* ================= ring ================= */
+
+    private int slot(long seq) {
+        return (int) (seq & (times.length - 1));
+    }
+
+    private int value(int m, long seq) {
+        return values[m][slot(seq)];
+    }
+
+    private void grow() {
+        long[] grownTimes = new long[times.length * 2];
+        short[][] grownValues = new short[METRICS.length][times.length * 2];
+        for (long seq = first; seq < next; seq++) {
+            int from = slot(seq);
+            int to = (int) (seq & (grownTimes.length - 1));
+            grownTimes[to] = times[from];
+            for (int m = 0; m < METRICS.length; m++) grownValues[m][to] = values[m][from];
+        }
+        times = grownTimes;
+        values = grownValues;
+    }
+
+    /* ================= windows ================= */
+
+    private final class Window {
+        final long span;
+        final Aggregate[] metrics = new Aggregate[METRICS.length];
+        long head;
+
+        Window(long span) {
+            this.span = span;
+            for (int m = 0; m < METRICS.length; m++) metrics[m] = new Aggregate(m, this);
+        }
+
+        void add(long seq) {
+            for (Aggregate aggregate : metrics) aggregate.add(seq);
+        }
+
+        void expire(long nowSecond) {
+            while (head < next && times[slot(head)] <= nowSecond - span) {
+                for (Aggregate aggregate : metrics) aggregate.remove(head);
+                head++;
+            }
+        }
+    }
+
+    private final class Aggregate {
+        final int metric;
+        final Window window;
+        final SeqDeque minima = new SeqDeque();
+        final SeqDeque maxima = new SeqDeque();
+        final Histogram histogram = new Histogram();
+        long sum;
+        int count;
+
+        Aggregate(int metric, Window window) {
+            this.metric = metric;
+            this.window = window;
+        }
+
+        void add(long seq) {
+            int v = value(metric, seq);
+            sum += v;
+            count++;
+            while (!minima.isEmpty() && value(metric, minima.last()) >= v) minima.removeLast();
+            minima.addLast(seq);
+            while (!maxima.isEmpty() && value(metric, maxima.last()) <= v) maxima.removeLast();
+            maxima.addLast(seq);
+
+            if (!histogram.covers(v)) {
+                // rebuild over a wider range from what is already in the window, then add v
+                int lo = v, hi = v;
+                for (long s = window.head; s < seq; s++) {
+                    lo = Math.min(lo, value(metric, s));
+                    hi = Math.max(hi, value(metric, s));
+                }
+                histogram.reset(lo, hi);
+                for (long s = window.head; s < seq; s++) histogram.add(value(metric, s), 1);
+            }
+            histogram.add(v, 1);
+        }
+
+        void remove(long seq) {
+            int v = value(metric, seq);
+            sum -= v;
+            count--;
+            if (!minima.isEmpty() && minima.first() == seq) minima.removeFirst();
+            if (!maxima.isEmpty() && maxima.first() == seq) maxima.removeFirst();
+            histogram.add(v, -1);
+        }
+    }
+
+    /** counts per value (in tenths) over [offset, offset + size), as a Fenwick tree */
+    private static final class Histogram {
+        /* slack on both sides of the observed range, so a rebuild is rare */
+        private static final int PAD = 50;
+
+        private int offset;
+        private int[] tree = new int[1];
+
+        boolean covers(int v) {
+            return tree.length > 1 && v >= offset && v < offset + tree.length - 1;
+        }
+
+        void reset(int lo, int hi) {
+            offset = lo - PAD;
+            tree = new int[hi - lo + 2 * PAD + 2];
+        }
+
+        void add(int v, int delta) {
+            for (int i = v - offset + 1; i < tree.length; i += i & -i) tree[i] += delta;
+        }
+
+        /** smallest value with at least {@code rank} values at or below it */
+        int valueAt(int rank) {
+            int pos = 0;
+            for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1) {
+                if (pos + step < tree.length && tree[pos + step] < rank) {
+                    pos += step;
+                    rank -= tree[pos];
+                }
+            }
+            return offset + pos;
+        }
+    }
+
+    /** growable ring of sequence numbers */
+    private static final class SeqDeque {
+        private long[] items = new long[8];
+        private int head;
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long first() {
+            return items[head];
+        }
+
+        long last() {
+            return items[(head + size - 1) & (items.length - 1)];
+        }
+
+        void addLast(long seq) {
+            if (size == items.length) {
+                long[] grown = new long[items.length * 2];
+                for (int i = 0; i < size; i++) grown[i] = items[(head + i) & (items.length - 1)];
+                items = grown;
+                head = 0;
+            }
+            items[(head + size) & (items.length - 1)] = seq;
+            size++;
+        }
+
+        void removeFirst() {
+            head = (head + 1) & (items.length - 1);
+            size--;
+        }
+
+        void removeLast() {
+            size--;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Current conditions for every known place inside a map viewport.
+ *
+ * Candidates are the gazetteer cities ({@link CityIndex}) and every
+ * location something has been fetched for ({@link LocationKeys}), both looked
+ * up by bounding box. They are thinned to one marker per screen cell, whose
+ * size follows the zoom level (weatherapi.map.markers-per-tile across a
+ * 256px tile), the most populous winning, and only the kept markers are looked
+ * up in the caches. At most weatherapi.map.fetch-limit
+ * uncached markers per request are filled in from upstream, with background
+ * priority so panning never eats into the quota kept for direct requests.
+ */
+@Service
+public class MapViewport {
+
+    private final CityIndex cityIndex;
+    private final LocationKeys locationKeys;
+    private final WeatherApiClient weatherApiClient;
+    private final UpstreamQuota quota;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @Value("${weatherapi.map.max-points:200}")
+    private int maxPoints;
+
+    @Value("${weatherapi.map.markers-per-tile:4}")
+    private int markersPerTile;
+
+    @Value("${weatherapi.map.fetch-limit:8}")
+    private int fetchLimit;
+
+    @Value("${weatherapi.map.fetch-timeout:3s}")
+    private Duration fetchTimeout;
+
+    public MapViewport(CityIndex cityIndex, LocationKeys locationKeys,
+                       WeatherApiClient weatherApiClient, UpstreamQuota quota) {
+        this.cityIndex = cityIndex;
+        this.locationKeys = locationKeys;
+        this.weatherApiClient = weatherApiClient;
+        this.quota = quota;
+    }
+
+    /** {@code total} counts every place in the box before thinning */
+    public record Area(int total, List<JsonNode> points) {
+    }
+
+    private static final class Candidate {
+        final String query;
+        final double lat;
+        final double lon;
+        final long population;
+        JsonNode current;
+
+        Candidate(String query, double lat, double lon, long population) {
+            this.query = query;
+            this.lat = lat;
+            this.lon = lon;
+            this.population = population;
+        }
+    }
+
+    /** west > east means the box crosses the antimeridian */
+    public Area area(double south, double west, double north, double east, int zoom) throws InterruptedException {
+        Map<String, Candidate> byKey = new LinkedHashMap<>();
+        for (CityIndex.City city : cityIndex.within(south, west, north, east)) {
+            String query = locationKeys.snap(city.lat(), city.lon());
+            String key = weatherApiClient.locationKey(query);
+            Candidate existing = byKey.get(key);
+            if (existing == null || existing.population < city.population()) {
+                byKey.put(key, new Candidate(query, city.lat(), city.lon(), city.population()));
+            }
+        }
+        for (String canonical : locationKeys.within(south, west, north, east)) {
+            String[] latLon = canonical.split(",");
+            byKey.putIfAbsent(canonical, new Candidate(canonical,
+                    Double.parseDouble(latLon[0]), Double.parseDouble(latLon[1]), 0));
+        }
+
+        List<Candidate> candidates = new ArrayList<>(byKey.values());
+        candidates.sort(Comparator.comparingLong((Candidate c) -> c.population).reversed());
+
+        // at low zoom most candidates are thinned away, so only the survivors are looked up
+        List<Candidate> kept = thin(candidates, zoom);
+        kept.forEach(c -> c.current = weatherApiClient.peekCurrent(c.query));
+        fill(kept);
+
+        List<JsonNode> points = new ArrayList<>(kept.size());
+        for (Candidate c : kept) {
+            if (c.current != null) points.add(c.current);
+        }
+        return new Area(candidates.size(), points);
+    }
+
+    /* first candidate per screen cell wins; the list is already in preference order */
+    private List<Candidate> thin(List<Candidate> candidates, int zoom) {
+        double cellDegrees = 360.0 / (markersPerTile * Math.pow(2, zoom));
+        Set<Long> taken = new HashSet<>();
+        List<Candidate> kept = new ArrayList<>();
+        for (Candidate c : candidates) {
+            if (kept.size() >= maxPoints) break;
+            long row = (long) Math.floor((c.lat + 90) / cellDegrees);
+            long column = (long) Math.floor((c.lon + 180) / cellDegrees);
+            // row and column each fill half of the key, so no two cells share one at any zoom
+            if (taken.add((row << 32) | (column & 0xffffffffL))) kept.add(c);
+        }
+        return kept;
+    }
+
+    /* uncached markers, most populous first, fetched concurrently; failures just stay empty */
+    private void fill(List<Candidate> kept) throws InterruptedException {
+        List<Candidate> missing = kept.stream().filter(c -> c.current == null).limit(fetchLimit).toList();
+        if (missing.isEmpty()) return;
+
+        List<Callable<JsonNode>> fetches = missing.stream()
+                .<Callable<JsonNode>>map(c -> () -> quota.inBackground(() -> weatherApiClient.current(c.query)))
+                .toList();
+        List<Future<JsonNode>> results = executor.invokeAll(fetches, fetchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+        for (int i = 0; i < missing.size(); i++) {
+            Future<JsonNode> result = results.get(i);
+            if (result.state() == Future.State.SUCCESS) missing.get(i).current = result.resultNow();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
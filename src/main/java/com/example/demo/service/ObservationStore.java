@@ -0,0 +1,506 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Local history of what upstream reported, so past days can be served without
+ * asking it again (WeatherAPI's free plan has no history).
+ *
+ * Every fetched payload appends its observations: the current block of
+ * current.json and forecast.json, and the first (today's) day of forecast.json.
+ * Records go to one segment file per location, series and month:
+ * <pre>
+ *   {weatherapi.history.path}/2026-10/daily/51.52%2C-0.11.seg
+ *   {weatherapi.history.path}/2026-10/current/51.52%2C-0.11.seg
+ * </pre>
+ * so a range query for a location reads one small file per month it spans.
+ * A segment is a magic number followed by length-prefixed fixed-layout records;
+ * a torn last record (crash mid-append) is ignored on read, and a record that
+ * cannot be decoded ends the read of its segment.
+ *
+ * Files are keyed by canonical location, so the query spellings that resolved
+ * to each location ({@link LocationKeys} aliases) are kept next to them in
+ * {weatherapi.history.path}/aliases.tsv; history stays reachable by city name
+ * after a restart, before upstream has been asked again.
+ *
+ * Appends run on one background thread. Every weatherapi.history.compaction-interval
+ * each segment changed since the last pass is rewritten sorted, with one record per
+ * day (daily) or per update time (current), the latest winning, and without records
+ * older than weatherapi.history.retention; month directories entirely past the
+ * retention are deleted. Disabled when weatherapi.history.path is empty.
+ */
+@Service
+public class ObservationStore {
+
+    private static final Logger log = LoggerFactory.getLogger(ObservationStore.class);
+
+    private static final int MAGIC = 0x574f4231; // "WOB1"
+    private static final String DAILY = "daily", CURRENT = "current";
+    private static final String ALIASES = "aliases.tsv";
+    /* encoded records are far smaller; a longer length prefix means a damaged segment */
+    private static final int MAX_RECORD = 512;
+
+    /** today's figures as last fetched; {@code fetchedAt} in epoch millis */
+    public record DailyObservation(LocalDate date, long fetchedAt, double maxTempC, double minTempC,
+                                   double avgTempC, double totalPrecipMm, int avgHumidity,
+                                   int chanceOfRain, int conditionCode, String conditionText, String icon) {
+    }
+
+    /** one current.json reading, at its last_updated_epoch */
+    public record CurrentObservation(long epochSecond, double tempC, double feelsLikeC, int humidity,
+                                     double windKph, double precipMm, int conditionCode) {
+    }
+
+    private final Path root;
+    private final Duration retention;
+    private final ExecutorService appender = Executors.newSingleThreadExecutor(Thread.ofVirtual().factory());
+    private final ReentrantLock[] stripes = new ReentrantLock[64];
+
+    private volatile long lastCompaction;
+
+    public ObservationStore(@Value("${weatherapi.history.path:}") String path,
+                            @Value("${weatherapi.history.retention:400d}") Duration retention) {
+        this.root = path.isBlank() ? null : Path.of(path);
+        this.retention = retention;
+        for (int i = 0; i < stripes.length; i++) stripes[i] = new ReentrantLock();
+    }
+
+    public boolean isEnabled() {
+        return root != null;
+    }
+
+    public Duration retention() {
+        return retention;
+    }
+
+    /* ================= recording ================= */
+
+    /** current.json or forecast.json payload; observations are written in the background */
+    public void record(JsonNode payload) {
+        if (root == null) return;
+        String key = LocationKeys.canonical(payload);
+        if (key == null) return;
+
+        JsonNode current = payload.path("current");
+        JsonNode today = payload.path("forecast").path("forecastday").path(0);
+        long fetchedAt = System.currentTimeMillis();
+        appender.execute(() -> {
+            try {
+                if (current.has("last_updated_epoch")) append(key, CURRENT, currentObservation(current));
+                if (today.has("date") && today.has("day")) append(key, DAILY, dailyObservation(today, fetchedAt));
+            } catch (Exception e) {
+                log.warn("Could not record observations for {}", key, e);
+            }
+        });
+    }
+
+    private static CurrentObservation currentObservation(JsonNode c) {
+        return new CurrentObservation(
+                c.path("last_updated_epoch").asLong(),
+                c.path("temp_c").asDouble(),
+                c.path("feelslike_c").asDouble(),
+                c.path("humidity").asInt(),
+                c.path("wind_kph").asDouble(),
+                c.path("precip_mm").asDouble(),
+                c.path("condition").path("code").asInt());
+    }
+
+    private static DailyObservation dailyObservation(JsonNode forecastDay, long fetchedAt) {
+        JsonNode d = forecastDay.path("day");
+        return new DailyObservation(
+                LocalDate.parse(forecastDay.path("date").asText()),
+                fetchedAt,
+                d.path("maxtemp_c").asDouble(),
+                d.path("mintemp_c").asDouble(),
+                d.path("avgtemp_c").asDouble(),
+                d.path("totalprecip_mm").asDouble(),
+                d.path("avghumidity").asInt(),
+                d.path("daily_chance_of_rain").asInt(),
+                d.path("condition").path("code").asInt(),
+                d.path("condition").path("text").asText(),
+                d.path("condition").path("icon").asText());
+    }
+
+    /** remembers that the normalized {@code query} resolved to {@code canonical}, in the background */
+    public void recordAlias(String query, String canonical) {
+        if (root == null) return;
+        appender.execute(() -> {
+            Path file = root.resolve(ALIASES);
+            ReentrantLock lock = lockFor(file);
+            lock.lock();
+            try {
+                Files.createDirectories(root);
+                Files.writeString(file, query + "\t" + canonical + "\n", StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                log.warn("Could not record alias {} for {}", query, canonical, e);
+            } finally {
+                lock.unlock();
+            }
+        });
+    }
+
+    /** every recorded query and the canonical key it resolved to last */
+    public Map<String, String> aliases() {
+        if (root == null) return Map.of();
+        Path file = root.resolve(ALIASES);
+        ReentrantLock lock = lockFor(file);
+        lock.lock();
+        try {
+            return Files.exists(file) ? parseAliases(Files.readAllLines(file, StandardCharsets.UTF_8)) : Map.of();
+        } catch (IOException e) {
+            log.warn("Could not read location aliases {}", file, e);
+            return Map.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void append(String key, String series, Object observation) throws IOException {
+        LocalDate date = observation instanceof DailyObservation daily ? daily.date()
+                : LocalDate.ofInstant(Instant.ofEpochSecond(((CurrentObservation) observation).epochSecond()), ZoneOffset.UTC);
+        Path file = segment(YearMonth.from(date), series, key);
+
+        ReentrantLock lock = lockFor(file);
+        lock.lock();
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                if (channel.size() == 0) channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+                channel.write(encode(observation));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* ================= range queries ================= */
+
+    /** one observation per day in [from, to], oldest first */
+    public List<DailyObservation> daily(String key, LocalDate from, LocalDate to) {
+        TreeMap<LocalDate, DailyObservation> days = new TreeMap<>();
+        for (YearMonth month = YearMonth.from(from); !month.isAfter(YearMonth.from(to)); month = month.plusMonths(1)) {
+            for (DailyObservation o : read(segment(month, DAILY, key), ObservationStore::decodeDaily)) {
+                if (o.date().isBefore(from) || o.date().isAfter(to)) continue;
+                days.merge(o.date(), o, (a, b) -> b.fetchedAt() >= a.fetchedAt() ? b : a);
+            }
+        }
+        return new ArrayList<>(days.values());
+    }
+
+    /** readings with last_updated_epoch in [fromEpochSecond, toEpochSecond], oldest first */
+    public List<CurrentObservation> current(String key, long fromEpochSecond, long toEpochSecond) {
+        TreeMap<Long, CurrentObservation> readings = new TreeMap<>();
+        YearMonth last = YearMonth.from(LocalDate.ofInstant(Instant.ofEpochSecond(toEpochSecond), ZoneOffset.UTC));
+        for (YearMonth month = YearMonth.from(LocalDate.ofInstant(Instant.ofEpochSecond(fromEpochSecond), ZoneOffset.UTC));
+             !month.isAfter(last); month = month.plusMonths(1)) {
+            for (CurrentObservation o : read(segment(month, CURRENT, key), ObservationStore::decodeCurrent)) {
+                if (o.epochSecond() >= fromEpochSecond && o.epochSecond() <= toEpochSecond) {
+                    readings.put(o.epochSecond(), o);
+                }
+            }
+        }
+        return new ArrayList<>(readings.values());
+    }
+
+    /* ================= compaction and retention ================= */
+
+    @Scheduled(fixedDelayString = "${weatherapi.history.compaction-interval:6h}",
+            initialDelayString = "${weatherapi.history.compaction-interval:6h}")
+    public void compact() {
+        if (root == null || !Files.isDirectory(root)) return;
+
+        long started = System.currentTimeMillis();
+        LocalDate cutoff = LocalDate.ofInstant(Instant.ofEpochMilli(started).minus(retention), ZoneOffset.UTC);
+        int rewritten = 0, deleted = 0;
+
+        try (Stream<Path> months = Files.list(root)) {
+            for (Path month : months.toList()) {
+                YearMonth ym = parseMonth(month);
+                if (ym == null) continue;
+                if (ym.atEndOfMonth().isBefore(cutoff)) {
+                    deleted += deleteTree(month);
+                    continue;
+                }
+                for (String series : List.of(DAILY, CURRENT)) {
+                    Path dir = month.resolve(series);
+                    if (!Files.isDirectory(dir)) continue;
+                    try (Stream<Path> files = Files.list(dir)) {
+                        for (Path file : files.filter(f -> f.toString().endsWith(".seg")).toList()) {
+                            if (Files.getLastModifiedTime(file).toMillis() < lastCompaction) continue;
+                            if (compact(file, series, cutoff)) rewritten++;
+                        }
+                    }
+                }
+            }
+            if (compactAliases()) rewritten++;
+            lastCompaction = started;
+        } catch (IOException e) {
+            log.warn("Could not compact observation store {}", root, e);
+        }
+        log.debug("Compacted observation store: {} segments rewritten, {} deleted in {} ms",
+                rewritten, deleted, System.currentTimeMillis() - started);
+    }
+
+    private boolean compact(Path file, String series, LocalDate cutoff) throws IOException {
+        ReentrantLock lock = lockFor(file);
+        lock.lock();
+        try {
+            List<?> records = DAILY.equals(series)
+                    ? read(file, ObservationStore::decodeDaily)
+                    : read(file, ObservationStore::decodeCurrent);
+
+            Map<Object, Object> latest = new TreeMap<>();
+            for (Object o : records) {
+                if (o instanceof DailyObservation d) {
+                    if (d.date().isBefore(cutoff)) continue;
+                    latest.merge(d.date(), d, (a, b) ->
+                            ((DailyObservation) b).fetchedAt() >= ((DailyObservation) a).fetchedAt() ? b : a);
+                } else if (o instanceof CurrentObservation c) {
+                    if (c.epochSecond() < cutoff.toEpochDay() * 86_400) continue;
+                    latest.put(c.epochSecond(), c);
+                }
+            }
+            if (latest.isEmpty()) {
+                Files.deleteIfExists(file);
+                return true;
+            }
+            if (latest.size() == records.size() && isSorted(records)) return false;
+
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.allocate(4).putInt(0, MAGIC));
+                for (Object o : latest.values()) channel.write(encode(o));
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* one line per query, the latest winning */
+    private boolean compactAliases() throws IOException {
+        Path file = root.resolve(ALIASES);
+        ReentrantLock lock = lockFor(file);
+        lock.lock();
+        try {
+            if (!Files.exists(file)) return false;
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            Map<String, String> aliases = parseAliases(lines);
+            if (aliases.size() == lines.size()) return false;
+
+            Path tmp = file.resolveSibling(ALIASES + ".tmp");
+            StringBuilder out = new StringBuilder();
+            aliases.forEach((query, canonical) -> out.append(query).append('\t').append(canonical).append('\n'));
+            Files.writeString(tmp, out, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* "query<TAB>canonical" lines, oldest first */
+    private static Map<String, String> parseAliases(List<String> lines) {
+        Map<String, String> aliases = new LinkedHashMap<>();
+        for (String line : lines) {
+            int tab = line.indexOf('\t');
+            if (tab <= 0 || tab == line.length() - 1) continue; // torn append
+            String query = line.substring(0, tab);
+            aliases.remove(query);
+            aliases.put(query, line.substring(tab + 1));
+        }
+        return aliases;
+    }
+
+    private static boolean isSorted(List<?> records) {
+        Comparator<Object> byTime = Comparator.comparingLong(o -> o instanceof DailyObservation d
+                ? d.date().toEpochDay() : ((CurrentObservation) o).epochSecond());
+        for (int i = 1; i < records.size(); i++) {
+            if (byTime.compare(records.get(i - 1), records.get(i)) >= 0) return false;
+        }
+        return true;
+    }
+
+    private static int deleteTree(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            List<Path> all = paths.sorted(Comparator.reverseOrder()).toList();
+            for (Path p : all) Files.deleteIfExists(p);
+            return all.size();
+        }
+    }
+
+    private static YearMonth parseMonth(Path dir) {
+        try {
+            return Files.isDirectory(dir) ? YearMonth.parse(dir.getFileName().toString()) : null;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        appender.close();
+    }
+
+    /* ================= segment files ================= */
+
+    private Path segment(YearMonth month, String series, String key) {
+        return root.resolve(month.toString()).resolve(series)
+                .resolve(URLEncoder.encode(key, StandardCharsets.UTF_8) + ".seg");
+    }
+
+    private ReentrantLock lockFor(Path file) {
+        return stripes[Math.floorMod(file.hashCode(), stripes.length)];
+    }
+
+    private <T> List<T> read(Path file, Function<ByteBuffer, T> decoder) {
+        if (root == null || !Files.exists(file)) return List.of();
+
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        } catch (IOException e) {
+            log.warn("Could not read observation segment {}", file, e);
+            return List.of();
+        }
+        if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) return List.of();
+
+        List<T> records = new ArrayList<>();
+        while (buffer.remaining() >= 2) {
+            int length = buffer.getShort() & 0xffff;
+            if (buffer.remaining() < length) break; // torn append
+            if (length == 0 || length > MAX_RECORD) {
+                log.warn("Skipping the rest of observation segment {}: bad record length {}", file, length);
+                break;
+            }
+            ByteBuffer record = buffer.slice(buffer.position(), length);
+            buffer.position(buffer.position() + length);
+            try {
+                records.add(decoder.apply(record));
+            } catch (BufferUnderflowException | DateTimeException e) {
+                log.warn("Skipping the rest of observation segment {}: undecodable record", file, e);
+                break;
+            }
+        }
+        return records;
+    }
+
+    /* ================= record layout ================= */
+
+    private static ByteBuffer encode(Object observation) {
+        ByteBuffer body = ByteBuffer.allocate(MAX_RECORD);
+        if (observation instanceof DailyObservation d) {
+            body.putInt((int) d.date().toEpochDay())
+                    .putLong(d.fetchedAt())
+                    .putFloat((float) d.maxTempC())
+                    .putFloat((float) d.minTempC())
+                    .putFloat((float) d.avgTempC())
+                    .putFloat((float) d.totalPrecipMm())
+                    .put((byte) d.avgHumidity())
+                    .put((byte) d.chanceOfRain())
+                    .putShort((short) d.conditionCode());
+            putString(body, d.conditionText());
+            putString(body, d.icon());
+        } else if (observation instanceof CurrentObservation c) {
+            body.putLong(c.epochSecond())
+                    .putFloat((float) c.tempC())
+                    .putFloat((float) c.feelsLikeC())
+                    .put((byte) c.humidity())
+                    .putFloat((float) c.windKph())
+                    .putFloat((float) c.precipMm())
+                    .putShort((short) c.conditionCode());
+        }
+        body.flip();
+
+        ByteBuffer record = ByteBuffer.allocate(2 + body.remaining());
+        record.putShort((short) body.remaining()).put(body).flip();
+        return record;
+    }
+
+    private static DailyObservation decodeDaily(ByteBuffer b) {
+        return new DailyObservation(
+                LocalDate.ofEpochDay(b.getInt()),
+                b.getLong(),
+                decimal(b.getFloat()),
+                decimal(b.getFloat()),
+                decimal(b.getFloat()),
+                decimal(b.getFloat()),
+                b.get() & 0xff,
+                b.get() & 0xff,
+                b.getShort(),
+                getString(b),
+                getString(b));
+    }
+
+    private static CurrentObservation decodeCurrent(ByteBuffer b) {
+        return new CurrentObservation(
+                b.getLong(),
+                decimal(b.getFloat()),
+                decimal(b.getFloat()),
+                b.get() & 0xff,
+                decimal(b.getFloat()),
+                decimal(b.getFloat()),
+                b.getShort());
+    }
+
+    /** the short decimal the float was written from (15.3f back to 15.3, not 15.300000190734863) */
+    private static double decimal(float value) {
+        return Double.parseDouble(Float.toString(value));
+    }
+
+    /* condition text and icon URLs are short; anything longer is cut to fit the record */
+    private static void putString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, 200);
+        // back up over continuation bytes (10xxxxxx) so a character is never cut in half
+        while (length < bytes.length && (bytes[length] & 0xc0) == 0x80) length--;
+        buffer.put((byte) length).put(bytes, 0, length);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.get() & 0xff;
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
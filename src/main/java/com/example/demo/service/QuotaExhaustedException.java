@@ -0,0 +1,16 @@
+package com.example.demo.service;
+
+import java.util.Locale;
+
+/**
+ * Thrown when the upstream token bucket has no budget left for a call of the
+ * current priority.
+ */
+public class QuotaExhaustedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public QuotaExhaustedException(UpstreamQuota.Priority priority) {
+        super("Weather provider quota exhausted for " + priority.name().toLowerCase(Locale.ROOT) + " requests");
+    }
+}
@@ -0,0 +1,268 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Keeps the final JSON bytes of each endpoint per location and variant (unit),
+ * so unchanged upstream data is mapped and serialized only once. Locations are
+ * keyed by the canonical key of the payload, so every query that resolved to
+ * the same place shares the bytes.
+ *
+ * An entry is reused while it was built from the same upstream fetch, recognised
+ * by the payload's localtime_epoch / last_updated_epoch pair. Responses carry a
+ * strong ETag over the bytes, Last-Modified from last_updated_epoch and a
+ * Cache-Control max-age; Spring MVC answers a matching If-None-Match with 304.
+ *
+ * Each entry is kept per negotiated encoding: JSON by default, CBOR or Smile
+ * when the Accept header prefers them. Bodies of at least
+ * weatherapi.response.gzip-min-size bytes are also gzipped once up front and
+ * sent that way to clients that accept it, under their own strong ETag
+ * (the identity one with a "-gzip" suffix). With
+ * {@code ?icons=code} icon URLs are shortened to their "day/116" part; the
+ * X-Icon-Base header carries the prefix to rebuild them. Otherwise icons are
+ * pointed at the local icon endpoint when {@link IconCache} has a public URL.
+ */
+@Service
+public class ResponseCache {
+
+    public static final String ICON_BASE_HEADER = "X-Icon-Base";
+
+    private static final Pattern ICON = Pattern.compile("^(.*/)((?:day|night)/\\d+)\\.png$");
+
+    enum Encoding {
+        JSON(MediaType.APPLICATION_JSON),
+        CBOR(MediaType.parseMediaType("application/cbor")),
+        SMILE(MediaType.parseMediaType("application/x-jackson-smile"));
+
+        final MediaType mediaType;
+
+        Encoding(MediaType mediaType) {
+            this.mediaType = mediaType;
+        }
+    }
+
+    private final ObjectMapper objectMapper;
+    private final Map<Encoding, ObjectMapper> writers;
+    private final UpstreamMetrics metrics;
+    private final IconCache icons;
+    private final ConcurrentHashMap<String, Serialized> entries = new ConcurrentHashMap<>();
+
+    @Value("${weatherapi.response.max-age:60s}")
+    private Duration maxAge;
+
+    @Value("${weatherapi.response.gzip-min-size:1024}")
+    private int gzipMinSize;
+
+    @Value("${weatherapi.cache.max-entries:10000}")
+    private int maxEntries;
+
+    public ResponseCache(ObjectMapper objectMapper, UpstreamMetrics metrics, IconCache icons) {
+        this.objectMapper = objectMapper;
+        this.writers = Map.of(
+                Encoding.JSON, objectMapper,
+                Encoding.CBOR, objectMapper.copyWith(new CBORFactory()),
+                Encoding.SMILE, objectMapper.copyWith(new SmileFactory()));
+        this.metrics = metrics;
+        this.icons = icons;
+    }
+
+    /** binds the upstream payload to {@code upstreamType} before mapping */
+    public <T> ResponseEntity<byte[]> respond(String endpoint, String location, String variant,
+                                              JsonNode payload, Class<T> upstreamType,
+                                              Function<T, ?> mapper) throws Exception {
+        return respond(endpoint, location, variant, payload, node -> {
+            try {
+                return mapper.apply(objectMapper.treeToValue(node, upstreamType));
+            } catch (Exception e) {
+                throw new IllegalStateException("Unexpected weather provider payload", e);
+            }
+        });
+    }
+
+    public ResponseEntity<byte[]> respond(String endpoint, String location, String variant,
+                                          JsonNode payload, Function<JsonNode, ?> mapper) throws Exception {
+        return serve(endpoint, location, variant, payload,
+                shortIcons -> mapper.apply(shortIcons ? shortenIcons(payload) : icons.rewrite(payload)));
+    }
+
+    /**
+     * A cached forecast, mapped straight from its arrays; {@code mapper} gets the
+     * icon rewrite this request asks for and applies it to every icon it copies.
+     */
+    public ResponseEntity<byte[]> respond(String endpoint, String location, String variant,
+                                          CompactForecast forecast,
+                                          BiFunction<CompactForecast, UnaryOperator<String>, ?> mapper) throws Exception {
+        return serve(endpoint, location, variant, forecast.head(),
+                shortIcons -> mapper.apply(forecast, shortIcons ? ResponseCache::shortIcon : icons::rewriteIcon));
+    }
+
+    /** builds the response body, with icons cut down to "day/116" or not */
+    @FunctionalInterface
+    private interface Body {
+        Object build(boolean shortIcons);
+    }
+
+    /* {@code head} carries the location and current blocks the key and freshness come from */
+    private ResponseEntity<byte[]> serve(String endpoint, String location, String variant,
+                                         JsonNode head, Body mapped) throws Exception {
+        HttpServletRequest request = currentRequest();
+        Encoding encoding = negotiate(request);
+        boolean shortIcons = request != null && "code".equalsIgnoreCase(request.getParameter("icons"));
+
+        String canonical = LocationKeys.canonical(head);
+        String key = endpoint + "|" + (canonical != null ? canonical : WeatherApiClient.normalize(location)) + "|" + variant
+                + "|" + encoding + (shortIcons ? "|icons" : "");
+        String source = head.path("location").path("localtime_epoch").asLong()
+                + ":" + head.path("current").path("last_updated_epoch").asLong();
+
+        Serialized cached = entries.get(key);
+        if (cached == null || !cached.source().equals(source)) {
+            ObjectMapper writer = writers.get(encoding);
+            byte[] body = metrics.timeSerialize(endpoint, () -> writer.writeValueAsBytes(mapped.build(shortIcons)));
+            cached = new Serialized(
+                    body,
+                    body.length >= gzipMinSize ? gzip(body) : null,
+                    DigestUtils.md5DigestAsHex(body),
+                    head.path("current").path("last_updated_epoch").asLong() * 1000,
+                    source,
+                    System.currentTimeMillis()
+            );
+            entries.put(key, cached);
+            if (entries.size() > maxEntries) evict();
+        }
+
+        boolean gzip = cached.gzipped() != null && acceptsGzip(request);
+        byte[] body = gzip ? cached.gzipped() : cached.body();
+        metrics.recordResponseSize(endpoint, body.length);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(encoding.mediaType)
+                .cacheControl(CacheControl.maxAge(maxAge).cachePublic())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .eTag(cached.etag(gzip));
+        if (cached.lastModified() > 0) response.lastModified(cached.lastModified());
+        if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        if (shortIcons) response.header(ICON_BASE_HEADER, icons.iconBase("64x64"));
+        return response.body(body);
+    }
+
+    /** first encoding with the highest quality in Accept; JSON when nothing else is asked for */
+    static Encoding negotiate(HttpServletRequest request) {
+        String accept = request == null ? null : request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank()) return Encoding.JSON;
+
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return Encoding.JSON;
+        }
+
+        Encoding best = Encoding.JSON;
+        double bestQuality = -1;
+        for (MediaType type : accepted) {
+            for (Encoding encoding : Encoding.values()) {
+                if (type.includes(encoding.mediaType) && type.getQualityValue() > bestQuality) {
+                    best = encoding;
+                    bestQuality = type.getQualityValue();
+                }
+            }
+        }
+        return bestQuality > 0 ? best : Encoding.JSON;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request == null ? null : request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!parts[0].trim().equalsIgnoreCase("gzip")) continue;
+            return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+        }
+        return false;
+    }
+
+    /** copy of the payload with every condition icon URL cut down to "day/116" */
+    private static JsonNode shortenIcons(JsonNode payload) {
+        JsonNode copy = payload.deepCopy();
+        shorten(copy);
+        return copy;
+    }
+
+    private static void shorten(JsonNode node) {
+        if (node instanceof ObjectNode object && object.get("icon") != null && object.get("icon").isTextual()) {
+            object.put("icon", shortIcon(object.get("icon").textValue()));
+        }
+        node.forEach(ResponseCache::shorten);
+    }
+
+    /** "//cdn.weatherapi.com/weather/64x64/day/116.png" -> "day/116"; anything else as is */
+    static String shortIcon(String icon) {
+        if (icon == null) return null;
+        Matcher m = ICON.matcher(icon);
+        return m.matches() ? m.group(2) : icon;
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+            gz.write(body);
+        } catch (IOException e) {
+            return null;
+        }
+        return out.toByteArray();
+    }
+
+    private static HttpServletRequest currentRequest() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                ? attributes.getRequest() : null;
+    }
+
+    private void evict() {
+        while (entries.size() > maxEntries) {
+            entries.entrySet().stream()
+                    .min(Comparator.comparingLong((Map.Entry<String, Serialized> e) -> e.getValue().createdAt()))
+                    .ifPresent(oldest -> entries.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    /** {@code gzipped} is null below the size threshold; {@code digest} is the md5 of {@code body} */
+    record Serialized(byte[] body, byte[] gzipped, String digest, long lastModified, String source, long createdAt) {
+
+        /** strong, and different for the gzipped bytes */
+        String etag(boolean gzip) {
+            return "\"" + digest + (gzip ? "-gzip" : "") + "\"";
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Rolling min/max/mean/percentiles of temperature, humidity and wind per
+ * location over the weatherapi.stats.windows (24h, 7d, 30d by default).
+ *
+ * Fed by every current reading that passes through the upstream loaders, so
+ * it costs no extra upstream traffic; a reading fetched twice counts once.
+ * Each reading updates all windows incrementally (see {@link LocationSeries}).
+ * When history is enabled, the first stats() for a location since startup
+ * backfills it from the {@link ObservationStore}; the read happens before any
+ * lock is taken and never on the loaders' path.
+ *
+ * At most max-locations series are kept; the least recently used goes first.
+ */
+@Service
+public final class RollingStats {
+
+    /** one metric over one window, in the metric's own unit */
+    public record Metric(double min, double max, double mean, Map<String, Double> percentiles) {
+    }
+
+    /** one window; metrics keyed temp_c, humidity, wind_kph */
+    public record Window(String window, int samples, Map<String, Metric> metrics) {
+    }
+
+    private final ObservationStore observations;
+    private final String[] labels;
+    private final Duration[] spans;
+    private final double[] percentiles;
+    private final Duration longest;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> series;
+
+    public RollingStats(ObservationStore observations,
+                        MeterRegistry registry,
+                        @Value("${weatherapi.stats.windows:24h,7d,30d}") String[] windows,
+                        @Value("${weatherapi.stats.percentiles:10,50,90}") double[] percentiles,
+                        @Value("${weatherapi.stats.max-locations:2000}") int maxLocations) {
+        this.observations = observations;
+        this.labels = Arrays.stream(windows).map(String::trim).toArray(String[]::new);
+        this.spans = Arrays.stream(labels).map(DurationStyle::detectAndParse).toArray(Duration[]::new);
+        this.percentiles = percentiles;
+        this.longest = Arrays.stream(spans).max(Duration::compareTo).orElse(Duration.ZERO);
+        this.series = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxLocations;
+            }
+        };
+
+        Gauge.builder("weatherapi.stats.locations", this, s -> s.size())
+                .description("Locations with rolling statistics in memory")
+                .register(registry);
+    }
+
+    /** current.json or forecast.json payload */
+    public void record(JsonNode payload) {
+        String key = LocationKeys.canonical(payload);
+        JsonNode current = payload.path("current");
+        if (key == null || !current.has("last_updated_epoch")) return;
+
+        long epochSecond = current.path("last_updated_epoch").asLong();
+        int[] tenths = {
+                tenths(current.path("temp_c").asDouble()),
+                tenths(current.path("humidity").asDouble()),
+                tenths(current.path("wind_kph").asDouble())};
+        // no history read here: this runs in the upstream loaders, stats() backfills on first use
+        Entry e = entry(key, null);
+        e.lock.lock();
+        try {
+            // a location that is fetched but never asked about must not grow without bound
+            if (e.series.add(epochSecond, tenths)) e.series.expire(epochSecond);
+        } finally {
+            e.lock.unlock();
+        }
+    }
+
+    /** windows in configured order; empty when nothing was observed for the location */
+    public List<Window> stats(String key) {
+        Entry e = existing(key);
+        if (e == null || !e.backfilled) {
+            // read before any lock is taken, then merged with what was recorded meanwhile
+            LocationSeries history = history(key);
+            if (e == null) {
+                if (history.size() == 0) return List.of();
+                e = entry(key, history);
+            }
+            e.lock.lock();
+            try {
+                if (!e.backfilled) {
+                    history.addAll(e.series);
+                    e.series = history;
+                    e.backfilled = true;
+                }
+            } finally {
+                e.lock.unlock();
+            }
+        }
+
+        List<Window> out = new ArrayList<>(spans.length);
+        e.lock.lock();
+        try {
+            LocationSeries s = e.series;
+            s.expire(System.currentTimeMillis() / 1000);
+            for (int w = 0; w < spans.length; w++) {
+                Map<String, Metric> metrics = new LinkedHashMap<>();
+                int samples = 0;
+                for (int m = 0; m < LocationSeries.METRICS.length; m++) {
+                    LocationSeries.Summary summary = s.summary(w, m, percentiles);
+                    if (summary == null) continue;
+                    samples = summary.samples();
+                    Map<String, Double> ranks = new LinkedHashMap<>();
+                    for (int i = 0; i < percentiles.length; i++) {
+                        ranks.put("p" + label(percentiles[i]), summary.percentiles()[i]);
+                    }
+                    metrics.put(LocationSeries.METRICS[m],
+                            new Metric(summary.min(), summary.max(), round(summary.mean()), ranks));
+                }
+                out.add(new Window(labels[w], samples, metrics));
+            }
+        } finally {
+            e.lock.unlock();
+        }
+        return out.stream().allMatch(w -> w.samples() == 0) ? List.of() : out;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return series.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** readings held for the key, 0 when there is no series */
+    int readings(String key) {
+        Entry e = existing(key);
+        if (e == null) return 0;
+        e.lock.lock();
+        try {
+            return e.series.size();
+        } finally {
+            e.lock.unlock();
+        }
+    }
+
+    private Entry existing(String key) {
+        lock.lock();
+        try {
+            return series.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* the key's entry; a new one holds {@code history} (already backfilled) or starts empty when that is null */
+    private Entry entry(String key, LocationSeries history) {
+        lock.lock();
+        try {
+            Entry e = series.get(key);
+            if (e == null) {
+                e = history != null
+                        ? new Entry(history, true)
+                        : new Entry(new LocationSeries(spans), !observations.isEnabled());
+                series.put(key, e);
+            }
+            return e;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* the key's readings over the longest window from the store; empty when history is off */
+    private LocationSeries history(String key) {
+        LocationSeries history = new LocationSeries(spans);
+        if (!observations.isEnabled()) return history;
+        long now = System.currentTimeMillis() / 1000;
+        for (ObservationStore.CurrentObservation o : observations.current(key, now - longest.toSeconds(), now)) {
+            history.add(o.epochSecond(), new int[]{tenths(o.tempC()), o.humidity() * 10, tenths(o.windKph())});
+        }
+        return history;
+    }
+
+    /** a location's series, guarded by its own lock; {@code backfilled} once history has been merged in */
+    private static final class Entry {
+        final ReentrantLock lock = new ReentrantLock();
+        LocationSeries series;
+        boolean backfilled;
+
+        Entry(LocationSeries series, boolean backfilled) {
+            this.series = series;
+            this.backfilled = backfilled;
+        }
+    }
+
+    private static int tenths(double value) {
+        return (int) Math.round(value * 10);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static String label(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
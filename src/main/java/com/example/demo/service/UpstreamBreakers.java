@@ -0,0 +1,50 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * One {@link CircuitBreaker} per upstream operation (current, forecast, search),
+ * all sharing the weatherapi.circuit.* settings. Each breaker's state is exposed
+ * as weatherapi.circuit.state{operation} (0 closed, 1 half-open, 2 open).
+ */
+@Service
+public class UpstreamBreakers {
+
+    private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final CircuitBreaker.Settings settings;
+    private final MeterRegistry registry;
+
+    public UpstreamBreakers(MeterRegistry registry,
+                            @Value("${weatherapi.circuit.window:20}") int window,
+                            @Value("${weatherapi.circuit.minimum-calls:10}") int minimumCalls,
+                            @Value("${weatherapi.circuit.failure-rate-threshold:50}") double failureRate,
+                            @Value("${weatherapi.circuit.slow-call-rate-threshold:80}") double slowCallRate,
+                            @Value("${weatherapi.circuit.slow-call-duration:2s}") Duration slowCallDuration,
+                            @Value("${weatherapi.circuit.open-for:30s}") Duration openFor,
+                            @Value("${weatherapi.circuit.half-open-calls:3}") int halfOpenCalls) {
+        this.registry = registry;
+        this.settings = new CircuitBreaker.Settings(window, minimumCalls, failureRate,
+                slowCallRate, slowCallDuration, openFor, halfOpenCalls);
+    }
+
+    public CircuitBreaker forOperation(String operation) {
+        return breakers.computeIfAbsent(operation, op -> {
+            CircuitBreaker breaker = new CircuitBreaker(op, settings);
+            Gauge.builder("weatherapi.circuit.state", breaker, b -> switch (b.state()) {
+                        case CLOSED -> 0;
+                        case HALF_OPEN -> 1;
+                        case OPEN -> 2;
+                    })
+                    .tag("operation", op)
+                    .register(registry);
+            return breaker;
+        });
+    }
+}
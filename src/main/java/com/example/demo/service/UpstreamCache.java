@@ -0,0 +1,216 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-process TTL cache for upstream responses.
+ *
+ * Concurrent misses for the same key are collapsed into a single loader call
+ * (single-flight): the first caller fetches, everybody else waits on its result.
+ * Failures are propagated to all waiters and never cached.
+ *
+ * Within the stale-while-revalidate window after expiry the old value is served
+ * immediately while one background reload runs. Reads are counted per key so
+ * callers can find the hottest keys and refresh them ahead of expiry.
+ *
+ * Entries can be seeded from elsewhere (a snapshot of a previous run): in bulk
+ * with {@link #restore}, or lazily through a warm source consulted whenever a
+ * key is missing in memory. Seeded entries keep their original timestamps, so
+ * they are fresh, stale or dropped exactly as if they had never left.
+ */
+public class UpstreamCache<V> {
+
+    private final ConcurrentHashMap<String, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<Entry<V>>> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> hits = new ConcurrentHashMap<>();
+
+    private final int maxEntries;
+    private final Duration staleWhileRevalidate;
+    private final Executor refreshExecutor;
+    private volatile Function<String, Entry<V>> warmSource;
+
+    public UpstreamCache(int maxEntries) {
+        this(maxEntries, Duration.ZERO, Runnable::run);
+    }
+
+    public UpstreamCache(int maxEntries, Duration staleWhileRevalidate, Executor refreshExecutor) {
+        this.maxEntries = maxEntries;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    public V get(String key, Duration ttl, Callable<V> loader) throws Exception {
+        recordHit(key);
+
+        long now = System.currentTimeMillis();
+        Entry<V> cached = entry(key);
+        if (cached != null && cached.isFresh(now)) {
+            return cached.value();
+        }
+        if (cached != null && now < cached.expiresAt() + staleWhileRevalidate.toMillis()) {
+            refreshInBackground(key, ttl, loader);
+            return cached.value();
+        }
+
+        return load(key, ttl, loader, false).value();
+    }
+
+    /** Reloads the key now, even if the cached value is still fresh. */
+    public V refresh(String key, Duration ttl, Callable<V> loader) throws Exception {
+        return load(key, ttl, loader, true).value();
+    }
+
+    /** Stores a value loaded elsewhere, e.g. under a second key for the same data. */
+    public void put(String key, V value, Duration ttl) {
+        long now = System.currentTimeMillis();
+        put(key, new Entry<>(value, now, now + ttl.toMillis()));
+    }
+
+    /** Latest entry for the key, fresh or not, without triggering a load. */
+    public Entry<V> peek(String key) {
+        return entry(key);
+    }
+
+    /** Seeds an entry loaded elsewhere unless the key is already cached or the entry is past its stale window. */
+    public void restore(String key, Entry<V> entry) {
+        if (!isUsable(entry, System.currentTimeMillis())) return;
+        if (entries.putIfAbsent(key, entry) == null && entries.size() > maxEntries) evict();
+    }
+
+    /** Where keys missing from memory are looked up before loading; null to stop. */
+    public void warmFrom(Function<String, Entry<V>> source) {
+        this.warmSource = source;
+    }
+
+    /** Point-in-time copy of every entry, e.g. for a snapshot. */
+    public Map<String, Entry<V>> entries() {
+        return Map.copyOf(entries);
+    }
+
+    public void recordHit(String key) {
+        hits.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    /** Most-read keys since counters were last decayed, hottest first. */
+    public List<String> hottest(int limit) {
+        return hits.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /** Halves every read counter so popularity follows recent traffic. */
+    public void decayHits() {
+        hits.entrySet().removeIf(e -> {
+            long half = e.getValue().sumThenReset() / 2;
+            if (half == 0) return true;
+            e.getValue().add(half);
+            return false;
+        });
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private Entry<V> entry(String key) {
+        Entry<V> cached = entries.get(key);
+        Function<String, Entry<V>> source = warmSource;
+        if (cached != null || source == null) return cached;
+
+        Entry<V> warm = source.apply(key);
+        if (warm == null) return null;
+        restore(key, warm);
+        return entries.get(key);
+    }
+
+    private boolean isUsable(Entry<V> entry, long now) {
+        return now < entry.expiresAt() + staleWhileRevalidate.toMillis();
+    }
+
+    private Entry<V> load(String key, Duration ttl, Callable<V> loader, boolean force) throws Exception {
+        CompletableFuture<Entry<V>> mine = new CompletableFuture<>();
+        CompletableFuture<Entry<V>> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            return await(leader);
+        }
+
+        try {
+            // another leader may have finished between our lookup and putIfAbsent
+            Entry<V> cached = entries.get(key);
+            if (!force && cached != null && cached.isFresh(System.currentTimeMillis())) {
+                mine.complete(cached);
+                return cached;
+            }
+
+            V value = loader.call();
+            long now = System.currentTimeMillis();
+            Entry<V> loaded = new Entry<>(value, now, now + ttl.toMillis());
+            put(key, loaded);
+            mine.complete(loaded);
+            return loaded;
+
+        } catch (Throwable t) {
+            // errors too: followers waiting on this future must not hang
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private void refreshInBackground(String key, Duration ttl, Callable<V> loader) {
+        if (inFlight.containsKey(key)) return;
+        refreshExecutor.execute(() -> {
+            try {
+                load(key, ttl, loader, true);
+            } catch (Exception e) {
+                // keep serving the stale value; the next read past the window retries
+            }
+        });
+    }
+
+    private void put(String key, Entry<V> entry) {
+        entries.put(key, entry);
+        if (entries.size() > maxEntries) evict();
+    }
+
+    /* drop entries past their stale window first, then the oldest ones until we are back under the cap */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(e -> !isUsable(e, now));
+
+        while (entries.size() > maxEntries) {
+            entries.entrySet().stream()
+                    .min(Comparator.comparingLong((Map.Entry<String, Entry<V>> e) -> e.getValue().fetchedAt()))
+                    .ifPresent(oldest -> entries.remove(oldest.getKey(), oldest.getValue()));
+        }
+    }
+
+    private static <V> Entry<V> await(CompletableFuture<Entry<V>> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            if (e.getCause() instanceof Error error) throw error;
+            throw e;
+        }
+    }
+
+    public record Entry<V>(V value, long fetchedAt, long expiresAt) {
+        boolean isFresh(long now) {
+            return now < expiresAt;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.service;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * One {@link Hedger} per upstream operation (current, forecast, search), all
+ * sharing the weatherapi.hedge.* settings and one virtual-thread executor.
+ * Exposed as:
+ * - weatherapi.hedge.requests{operation,outcome}   hedges sent; outcome won (hedge answered first) or lost
+ * - weatherapi.hedge.skipped{operation,reason}     hedges due but not sent (rate cap, low quota)
+ * - weatherapi.hedge.delay{operation}              current hedge delay in ms (-1 while warming up)
+ */
+@Service
+public class UpstreamHedging {
+
+    private final ConcurrentHashMap<String, Hedger> hedgers = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Hedger.Settings settings;
+    private final UpstreamQuota quota;
+    private final MeterRegistry registry;
+
+    public UpstreamHedging(UpstreamQuota quota,
+                           MeterRegistry registry,
+                           @Value("${weatherapi.hedge.enabled:false}") boolean enabled,
+                           @Value("${weatherapi.hedge.percentile:95}") double percentile,
+                           @Value("${weatherapi.hedge.min-delay:50ms}") Duration minDelay,
+                           @Value("${weatherapi.hedge.max-rate:0.05}") double maxRate,
+                           @Value("${weatherapi.hedge.window:128}") int window,
+                           @Value("${weatherapi.hedge.min-samples:20}") int minSamples) {
+        this.quota = quota;
+        this.registry = registry;
+        this.settings = new Hedger.Settings(enabled, percentile, minDelay, maxRate, window, minSamples);
+    }
+
+    public Hedger forOperation(String operation) {
+        return hedgers.computeIfAbsent(operation, op -> {
+            Hedger hedger = new Hedger(settings, quota, executor, new Hedger.Listener() {
+                @Override
+                public void hedged(boolean won) {
+                    Counter.builder("weatherapi.hedge.requests")
+                            .description("Hedged upstream attempts and whether they answered first")
+                            .tag("operation", op)
+                            .tag("outcome", won ? "won" : "lost")
+                            .register(registry)
+                            .increment();
+                }
+
+                @Override
+                public void skipped(String reason) {
+                    Counter.builder("weatherapi.hedge.skipped")
+                            .description("Hedges that were due but not sent")
+                            .tag("operation", op)
+                            .tag("reason", reason)
+                            .register(registry)
+                            .increment();
+                }
+            });
+            Gauge.builder("weatherapi.hedge.delay", hedger, Hedger::delayMillis)
+                    .description("Time an upstream attempt may take before it is hedged")
+                    .baseUnit("milliseconds")
+                    .tag("operation", op)
+                    .register(registry);
+            return hedger;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.demo.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Hot-path meters for upstream calls and response serialization:
+ * - weatherapi.upstream.latency{operation,outcome}     timer, percentile histogram (success, error, cancelled)
+ * - weatherapi.upstream.errors{operation,type}         counter (timeout, server_error, ...)
+ * - weatherapi.upstream.inflight{operation}            gauge
+ * - weatherapi.upstream.payload{operation}             bytes read per response
+ * - weatherapi.json.parse{operation}                   timer
+ * - weatherapi.json.serialize{endpoint}                timer
+ * - weatherapi.response.size{endpoint}                 bytes written per serialized response
+ *
+ * Per-endpoint request timers and in-flight requests come from Spring Boot's
+ * http.server.requests and http.server.requests.active.
+ */
+@Service
+public class UpstreamMetrics {
+
+    @FunctionalInterface
+    public interface BodyParser<T> {
+        T parse(InputStream body) throws IOException;
+    }
+
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    public UpstreamMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** Times one upstream round trip and classifies its failure, if any. */
+    public <T> T timeCall(String operation, Callable<T> call) throws Exception {
+        AtomicInteger active = inFlight(operation);
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return call.call();
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // a hedged attempt that lost the race, not an upstream failure
+                outcome = "cancelled";
+                throw e;
+            }
+            outcome = "error";
+            Counter.builder("weatherapi.upstream.errors")
+                    .description("Failed upstream calls by cause")
+                    .tag("operation", operation)
+                    .tag("type", classify(e))
+                    .register(registry)
+                    .increment();
+            throw e;
+        } finally {
+            active.decrementAndGet();
+            Timer.builder("weatherapi.upstream.latency")
+                    .description("Upstream round-trip latency")
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /** Parses an upstream body, recording parse time and bytes read. */
+    public <T> T parse(String operation, InputStream body, BodyParser<T> parser) throws IOException {
+        CountingInputStream counting = new CountingInputStream(body);
+        Timer.Sample sample = Timer.start(registry);
+        try {
+            return parser.parse(counting);
+        } finally {
+            sample.stop(Timer.builder("weatherapi.json.parse")
+                    .description("Time spent parsing upstream JSON")
+                    .tag("operation", operation)
+                    .register(registry));
+            DistributionSummary.builder("weatherapi.upstream.payload")
+                    .description("Upstream response body size")
+                    .baseUnit("bytes")
+                    .tag("operation", operation)
+                    .register(registry)
+                    .record(counting.count);
+        }
+    }
+
+    public <T> T timeSerialize(String endpoint, Callable<T> serialize) throws Exception {
+        Timer timer = Timer.builder("weatherapi.json.serialize")
+                .description("Time spent mapping and serializing responses")
+                .tag("endpoint", endpoint)
+                .register(registry);
+        return timer.recordCallable(serialize);
+    }
+
+    public void recordResponseSize(String endpoint, int bytes) {
+        DistributionSummary.builder("weatherapi.response.size")
+                .description("Serialized response body size")
+                .baseUnit("bytes")
+                .tag("endpoint", endpoint)
+                .register(registry)
+                .record(bytes);
+    }
+
+    private AtomicInteger inFlight(String operation) {
+        return inFlight.computeIfAbsent(operation, op -> {
+            AtomicInteger gauge = new AtomicInteger();
+            Gauge.builder("weatherapi.upstream.inflight", gauge, AtomicInteger::get)
+                    .description("Upstream calls currently in progress")
+                    .tag("operation", op)
+                    .register(registry);
+            return gauge;
+        });
+    }
+
+    static String classify(Throwable e) {
+        if (e instanceof HttpClientErrorException c) {
+            return c.getStatusCode().value() == 429 ? "rate_limited" : "client_error";
+        }
+        if (e instanceof HttpServerErrorException) return "server_error";
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getClass().getSimpleName().contains("Timeout")) return "timeout";
+        }
+        return "other";
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.demo.service;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Token-bucket governor for the shared weatherapi.api.key.
+ *
+ * Every upstream call takes one token. The bucket refills at
+ * weatherapi.quota.per-minute up to weatherapi.quota.burst. Background work
+ * (refresh, prefetch, autocomplete) only gets a token while the bucket is above
+ * the background reserve, so user requests keep the last part of the budget.
+ * Work is background when it runs inside {@link #inBackground(Callable)}.
+ *
+ * Exposed as weatherapi.quota.tokens and weatherapi.quota.decisions{priority,outcome}.
+ */
+@Service
+public final class UpstreamQuota {
+
+    public enum Priority { FOREGROUND, BACKGROUND }
+
+    private enum Outcome { ADMITTED, THROTTLED, SERVED_FROM_CACHE }
+
+    private static final ThreadLocal<Priority> PRIORITY = ThreadLocal.withInitial(() -> Priority.FOREGROUND);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final double capacity;
+    private final double tokensPerNano;
+    private final double backgroundFloor;
+    private final double lowWatermark;
+
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /* weatherapi.quota.decisions, by priority then outcome */
+    private final Counter[][] decisions = new Counter[Priority.values().length][Outcome.values().length];
+
+    public UpstreamQuota(MeterRegistry registry,
+                         @Value("${weatherapi.quota.per-minute:60}") double perMinute,
+                         @Value("${weatherapi.quota.burst:120}") double burst,
+                         @Value("${weatherapi.quota.background-reserve:0.5}") double backgroundReserve,
+                         @Value("${weatherapi.quota.low-watermark:0.2}") double lowWatermark) {
+        this.capacity = burst;
+        this.tokensPerNano = perMinute / 60_000_000_000d;
+        this.backgroundFloor = burst * backgroundReserve;
+        this.lowWatermark = burst * lowWatermark;
+        this.tokens = burst;
+
+        for (Priority priority : Priority.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                decisions[priority.ordinal()][outcome.ordinal()] = Counter.builder("weatherapi.quota.decisions")
+                        .description("Upstream admission decisions")
+                        .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                        .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                        .register(registry);
+            }
+        }
+        Gauge.builder("weatherapi.quota.tokens", this, UpstreamQuota::available)
+                .description("Upstream calls currently left in the token bucket")
+                .register(registry);
+    }
+
+    /** Takes one token for the current priority or throws {@link QuotaExhaustedException}. */
+    public void acquire() {
+        Priority priority = PRIORITY.get();
+        double floor = priority == Priority.BACKGROUND ? backgroundFloor : 0;
+
+        lock.lock();
+        try {
+            refill();
+            if (tokens - 1 < floor) {
+                record(priority, Outcome.THROTTLED);
+                throw new QuotaExhaustedException(priority);
+            }
+            tokens -= 1;
+        } finally {
+            lock.unlock();
+        }
+        record(priority, Outcome.ADMITTED);
+    }
+
+    /** True when the bucket is below the low watermark and cached data should be preferred. */
+    public boolean isLow() {
+        return available() < lowWatermark;
+    }
+
+    public void recordServedFromCache() {
+        record(PRIORITY.get(), Outcome.SERVED_FROM_CACHE);
+    }
+
+    public double available() {
+        lock.lock();
+        try {
+            refill();
+            return tokens;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Runs {@code work} with background priority on the current thread. */
+    public <T> T inBackground(Callable<T> work) throws Exception {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(Priority.BACKGROUND);
+        try {
+            return work.call();
+        } finally {
+            PRIORITY.set(previous);
+        }
+    }
+
+    /** {@code work} wrapped to run with the calling thread's priority on whatever thread runs it */
+    public <T> Callable<T> withCurrentPriority(Callable<T> work) {
+        Priority priority = PRIORITY.get();
+        return () -> {
+            Priority previous = PRIORITY.get();
+            PRIORITY.set(priority);
+            try {
+                return work.call();
+            } finally {
+                PRIORITY.set(previous);
+            }
+        };
+    }
+
+    public void inBackground(Runnable work) {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(Priority.BACKGROUND);
+        try {
+            work.run();
+        } finally {
+            PRIORITY.set(previous);
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+        refilledAt = now;
+    }
+
+    private void record(Priority priority, Outcome outcome) {
+        decisions[priority.ordinal()][outcome.ordinal()].increment();
+    }
+}
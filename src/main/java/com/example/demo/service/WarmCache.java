@@ -0,0 +1,115 @@
+package com.example.demo.service;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Carries the upstream caches across restarts through a {@link CacheSnapshot}
+ * at weatherapi.snapshot.path (disabled when empty).
+ *
+ * On startup the snapshot is mapped on a background thread and becomes a warm
+ * source for the caches, so a request for a snapshotted location is answered
+ * from it immediately; meanwhile every entry is restored in parallel. Entries
+ * keep their original TTLs: fresh ones are served, stale ones are served while
+ * revalidating, expired ones are dropped. Startup itself never waits on the file.
+ *
+ * The snapshot is rewritten every weatherapi.snapshot.interval and on shutdown.
+ */
+@Service
+public class WarmCache {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmCache.class);
+
+    private final WeatherApiClient weatherApiClient;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /* not before the old snapshot is read back, or an early save would overwrite it with less */
+    private volatile boolean restored;
+
+    @Value("${weatherapi.snapshot.path:}")
+    private String path;
+
+    @Value("${weatherapi.snapshot.restore-parallelism:4}")
+    private int parallelism;
+
+    public WarmCache(WeatherApiClient weatherApiClient, ObjectMapper objectMapper) {
+        this.weatherApiClient = weatherApiClient;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void restore() {
+        if (path.isBlank()) return;
+        executor.execute(this::restoreNow);
+    }
+
+    void restoreNow() {
+        long started = System.currentTimeMillis();
+        Map<String, WeatherApiClient.CacheView<?>> caches = weatherApiClient.caches();
+        try {
+            CacheSnapshot snapshot = CacheSnapshot.open(Path.of(path), objectMapper);
+            if (snapshot == null) return;
+
+            caches.forEach((name, cache) -> cache.warmFrom(key -> snapshot.lookup(name, key)));
+
+            try (ExecutorService restorers = Executors.newVirtualThreadPerTaskExecutor()) {
+                caches.forEach((name, cache) -> {
+                    List<String> keys = snapshot.keys(name);
+                    int chunk = Math.max(1, (keys.size() + parallelism - 1) / parallelism);
+                    for (int from = 0; from < keys.size(); from += chunk) {
+                        List<String> part = keys.subList(from, Math.min(keys.size(), from + chunk));
+                        restorers.execute(() -> part.forEach(key -> {
+                            UpstreamCache.Entry<JsonNode> entry = snapshot.lookup(name, key);
+                            if (entry != null) cache.restore(key, entry);
+                        }));
+                    }
+                });
+            }
+            log.info("Restored cache snapshot {} ({} records) in {} ms",
+                    path, snapshot.size(), System.currentTimeMillis() - started);
+
+        } catch (Exception e) {
+            log.warn("Could not restore cache snapshot {}", path, e);
+        } finally {
+            caches.values().forEach(cache -> cache.warmFrom(null));
+            restored = true;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${weatherapi.snapshot.interval:5m}",
+            initialDelayString = "${weatherapi.snapshot.interval:5m}")
+    public void save() {
+        if (path.isBlank() || !restored) return;
+
+        Map<String, Map<String, UpstreamCache.Entry<JsonNode>>> entries = new LinkedHashMap<>();
+        weatherApiClient.caches().forEach((name, cache) -> entries.put(name, cache.entries()));
+        try {
+            CacheSnapshot.write(Path.of(path), entries, objectMapper);
+        } catch (Exception e) {
+            log.warn("Could not write cache snapshot {}", path, e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+        save();
+    }
+}
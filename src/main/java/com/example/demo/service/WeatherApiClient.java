@@ -0,0 +1,401 @@
+package com.example.demo.service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Single entry point for WeatherAPI current.json / forecast.json / search.json calls.
+ *
+ * Responses are cached per location (see {@link UpstreamCache}), current
+ * conditions and forecasts with their own TTL. Once a query has resolved to an
+ * upstream location it is keyed by that location's canonical key (see
+ * {@link LocationKeys}), so different spellings and nearby coordinates share
+ * one entry.
+ *
+ * Fetch planning: forecast.json is always requested with the widest horizon
+ * ({@link #MAX_DAYS}) once per location, and shorter horizons are the first
+ * days of that forecast. A fresh forecast payload also answers current.json,
+ * since it carries the same location and current blocks.
+ *
+ * forecast.json bodies are parsed with {@link ForecastPayloadReader}, which
+ * streams off the socket and drops subtrees no endpoint reads, and cached as a
+ * {@link CompactForecast}: primitive arrays per field, which the forecast
+ * endpoints map to their DTOs directly.
+ *
+ * Expired entries are served stale while one background reload runs, and the
+ * most-read locations are refreshed on a schedule shortly before they expire
+ * (bounded by weatherapi.refresh.max-per-run), so hot keys rarely block on upstream.
+ *
+ * Every upstream call passes through {@link UpstreamQuota}. Refresh and search
+ * run with background priority; when the budget is low or exhausted, whatever
+ * cached value exists for the location is served instead of calling upstream.
+ *
+ * Each operation (current, forecast, search) sits behind its own
+ * {@link CircuitBreaker}. While a breaker is open calls fail fast, and reads are
+ * answered with last-known-good data flagged by the {@link Degraded} header.
+ * Every fetched payload is also appended to the {@link ObservationStore}, and each
+ * newly learned alias is kept there too, so it survives a restart.
+ *
+ * Inside the breaker, calls may be hedged with a second attempt when the first
+ * is slower than usual (see {@link Hedger}, off unless weatherapi.hedge.enabled).
+ */
+@Service
+public class WeatherApiClient {
+
+    /** widest horizon on the free plan; every view is derived from it */
+    public static final int MAX_DAYS = 7;
+
+    @Value("${weatherapi.base.url}")
+    private String baseUrl;
+
+    @Value("${weatherapi.api.key}")
+    private String apiKey;
+
+    @Value("${weatherapi.cache.current-ttl:5m}")
+    private Duration currentTtl;
+
+    @Value("${weatherapi.cache.forecast-ttl:30m}")
+    private Duration forecastTtl;
+
+    @Value("${weatherapi.refresh.enabled:true}")
+    private boolean refreshEnabled;
+
+    @Value("${weatherapi.refresh.top:50}")
+    private int refreshTop;
+
+    @Value("${weatherapi.refresh.max-per-run:10}")
+    private int refreshMaxPerRun;
+
+    @Value("${weatherapi.refresh.ahead:2m}")
+    private Duration refreshAhead;
+
+    private final RestTemplate restTemplate;
+    private final ObjectMapper objectMapper;
+    private final UpstreamQuota quota;
+    private final UpstreamMetrics metrics;
+    private final LocationKeys locationKeys;
+    private final ForecastPayloadReader forecastReader;
+    private final ObservationStore observations;
+    private final RollingStats rollingStats;
+
+    private final CircuitBreaker currentBreaker;
+    private final CircuitBreaker forecastBreaker;
+    private final CircuitBreaker searchBreaker;
+    private final UpstreamHedging hedging;
+
+    private final Duration staleWhileRevalidate;
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final UpstreamCache<JsonNode> currentCache;
+    private final UpstreamCache<CompactForecast> forecastCache;
+
+    public WeatherApiClient(RestTemplate restTemplate,
+                            ObjectMapper objectMapper,
+                            UpstreamQuota quota,
+                            UpstreamBreakers breakers,
+                            UpstreamHedging hedging,
+                            UpstreamMetrics metrics,
+                            LocationKeys locationKeys,
+                            ObservationStore observations,
+                            RollingStats rollingStats,
+                            @Value("${weatherapi.cache.max-entries:10000}") int maxEntries,
+                            @Value("${weatherapi.cache.stale-while-revalidate:10m}") Duration staleWhileRevalidate) {
+        this.restTemplate = restTemplate;
+        this.objectMapper = objectMapper;
+        this.quota = quota;
+        this.metrics = metrics;
+        this.locationKeys = locationKeys;
+        this.forecastReader = new ForecastPayloadReader(objectMapper);
+        this.observations = observations;
+        this.rollingStats = rollingStats;
+        this.currentBreaker = breakers.forOperation("current");
+        this.forecastBreaker = breakers.forOperation("forecast");
+        this.searchBreaker = breakers.forOperation("search");
+        this.hedging = hedging;
+        this.staleWhileRevalidate = staleWhileRevalidate;
+
+        // stale-while-revalidate reloads are background work
+        Executor background = task -> refreshExecutor.execute(() -> quota.inBackground(task));
+        this.currentCache = new UpstreamCache<>(maxEntries, staleWhileRevalidate, background);
+        this.forecastCache = new UpstreamCache<>(maxEntries, staleWhileRevalidate, background);
+    }
+
+    /* ================= current.json ================= */
+
+    public JsonNode current(String q) throws Exception {
+        String query = query(q);
+        String key = locationKeys.resolve(query);
+
+        UpstreamCache.Entry<CompactForecast> superset = forecastCache.peek(key);
+        if (superset != null && System.currentTimeMillis() - superset.fetchedAt() < currentTtl.toMillis()) {
+            forecastCache.recordHit(key);
+            return superset.value().head();
+        }
+
+        return cached(currentCache, query, key, currentTtl, () -> loadCurrent(query), Function.identity());
+    }
+
+    /**
+     * Current conditions for the query if either cache holds them, fresh or within
+     * the stale window; null otherwise. Never calls upstream.
+     */
+    public JsonNode peekCurrent(String q) {
+        String key = locationKey(q);
+        UpstreamCache.Entry<JsonNode> current = currentCache.peek(key);
+        UpstreamCache.Entry<CompactForecast> forecast = forecastCache.peek(key);
+
+        boolean fromForecast = forecast != null && (current == null || forecast.fetchedAt() > current.fetchedAt());
+        long expiresAt = fromForecast ? forecast.expiresAt() : current != null ? current.expiresAt() : 0;
+        if (expiresAt + staleWhileRevalidate.toMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return fromForecast ? forecast.value().head() : current.value();
+    }
+
+    public <T> T current(String q, Class<T> type) throws Exception {
+        return objectMapper.treeToValue(current(q), type);
+    }
+
+    /* ================= forecast.json ================= */
+
+    public CompactForecast forecast(String q, int days) throws Exception {
+        String query = query(q);
+        return cached(forecastCache, query, locationKeys.resolve(query), forecastTtl,
+                () -> loadForecast(query), CompactForecast::head).limit(days);
+    }
+
+    /* ================= search.json ================= */
+
+    /** autocomplete traffic, so it runs with background priority */
+    public <T> T search(String q, Class<T> type) throws Exception {
+        JsonNode results = quota.inBackground(() -> fetch(searchBreaker, uri("/search.json", q).build().toUri()));
+        return objectMapper.treeToValue(results, type);
+    }
+
+    /* ================= background refresh ================= */
+
+    /**
+     * Reloads the hottest locations whose entries expire within weatherapi.refresh.ahead,
+     * at most weatherapi.refresh.max-per-run upstream calls per run, then decays the
+     * read counters so popularity tracks recent traffic. The counters decay on every
+     * run, also with weatherapi.refresh.enabled off, so the counter map stays bounded.
+     */
+    @Scheduled(fixedDelayString = "${weatherapi.refresh.interval:30s}")
+    public void refreshHotLocations() {
+        if (refreshEnabled) {
+            quota.inBackground(() -> {
+                int budget = refreshMaxPerRun;
+                budget -= refreshExpiring(forecastCache, forecastTtl, this::loadForecast, budget);
+                refreshExpiring(currentCache, currentTtl, this::loadCurrent, budget);
+            });
+        }
+
+        forecastCache.decayHits();
+        currentCache.decayHits();
+    }
+
+    private <V> int refreshExpiring(UpstreamCache<V> cache, Duration ttl,
+                                    Loader<V> loader, int budget) {
+        long deadline = System.currentTimeMillis() + refreshAhead.toMillis();
+        int used = 0;
+
+        for (String key : cache.hottest(refreshTop)) {
+            if (used >= budget) break;
+
+            UpstreamCache.Entry<V> entry = cache.peek(key);
+            if (entry == null || entry.expiresAt() > deadline) continue;
+
+            used++;
+            try {
+                cache.refresh(key, ttl, () -> loader.load(key));
+            } catch (QuotaExhaustedException e) {
+                break;
+            } catch (Exception e) {
+                // entry stays as it is; readers fall back to stale-while-revalidate
+            }
+        }
+        return used;
+    }
+
+    /* ================= upstream loaders ================= */
+
+    @FunctionalInterface
+    private interface Loader<V> {
+        V load(String q) throws Exception;
+    }
+
+    private JsonNode loadCurrent(String q) throws Exception {
+        JsonNode payload = fetch(currentBreaker, uri("/current.json", q).build().toUri());
+        observe(payload);
+        return payload;
+    }
+
+    /* every fetched reading goes to the local history and the rolling statistics */
+    private void observe(JsonNode payload) {
+        observations.record(payload);
+        rollingStats.record(payload);
+    }
+
+    private CompactForecast loadForecast(String q) throws Exception {
+        JsonNode payload = fetch(forecastBreaker,
+                uri("/forecast.json", q)
+                        .queryParam("days", MAX_DAYS)
+                        .queryParam("aqi", "no")
+                        .queryParam("alerts", "no")
+                        .build().toUri(),
+                forecastReader::read
+        );
+        observe(payload);
+        return CompactForecast.of(payload);
+    }
+
+    /** the upstream caches by name, for {@link WarmCache} */
+    Map<String, CacheView<?>> caches() {
+        return Map.of(
+                "current", new CacheView<>(currentCache, Function.identity(), Function.identity()),
+                "forecast", new CacheView<>(forecastCache, CompactForecast::tree, CompactForecast::of));
+    }
+
+    /** an upstream cache with its entries seen as JSON, the form snapshots store */
+    record CacheView<V>(UpstreamCache<V> cache, Function<V, JsonNode> toJson, Function<JsonNode, V> fromJson) {
+
+        Map<String, UpstreamCache.Entry<JsonNode>> entries() {
+            Map<String, UpstreamCache.Entry<JsonNode>> entries = new LinkedHashMap<>();
+            cache.entries().forEach((key, e) ->
+                    entries.put(key, new UpstreamCache.Entry<>(toJson.apply(e.value()), e.fetchedAt(), e.expiresAt())));
+            return entries;
+        }
+
+        void restore(String key, UpstreamCache.Entry<JsonNode> entry) {
+            cache.restore(key, decode(entry));
+        }
+
+        void warmFrom(Function<String, UpstreamCache.Entry<JsonNode>> source) {
+            cache.warmFrom(source == null ? null : key -> decode(source.apply(key)));
+        }
+
+        private UpstreamCache.Entry<V> decode(UpstreamCache.Entry<JsonNode> entry) {
+            return entry == null ? null
+                    : new UpstreamCache.Entry<>(fromJson.apply(entry.value()), entry.fetchedAt(), entry.expiresAt());
+        }
+    }
+
+    /* history is filed under canonical keys; reach it by the names it was fetched under */
+    @PostConstruct
+    void restoreAliases() {
+        observations.aliases().forEach(locationKeys::remember);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /* ================= helpers ================= */
+
+    /** cache read that falls back to whatever is cached when the quota is low or spent */
+    private <V> V cached(UpstreamCache<V> cache, String q, String key, Duration ttl,
+                         Callable<V> upstream, Function<V, JsonNode> json) throws Exception {
+        // file the payload under the location it resolved to, for the next spelling of it
+        Callable<V> loader = () -> {
+            V payload = upstream.call();
+            String canonical = locationKeys.learn(normalize(q), json.apply(payload));
+            if (canonical != null && !canonical.equals(key)) {
+                cache.put(canonical, payload, ttl);
+                observations.recordAlias(normalize(q), canonical);
+            }
+            return payload;
+        };
+
+        UpstreamCache.Entry<V> last = cache.peek(key);
+        if (last != null && quota.isLow()) {
+            cache.recordHit(key);
+            quota.recordServedFromCache();
+            if (last.expiresAt() <= System.currentTimeMillis()) Degraded.mark("quota");
+            return last.value();
+        }
+
+        try {
+            return cache.get(key, ttl, loader);
+        } catch (HttpClientErrorException e) {
+            // unknown location etc. - nothing to fall back to; a provider refusal is an outage for us
+            if (!CircuitBreaker.refused(e)) throw e;
+            return stale(cache, key, e, "upstream-refused");
+        } catch (QuotaExhaustedException | CircuitOpenException | RestClientException | IllegalStateException e) {
+            if (e instanceof QuotaExhaustedException && cache.peek(key) != null) quota.recordServedFromCache();
+            return stale(cache, key, e, e instanceof QuotaExhaustedException ? "quota"
+                    : e instanceof CircuitOpenException ? "circuit-open"
+                    : "upstream-error");
+        }
+    }
+
+    /** the last cached value, marked degraded for {@code reason}; rethrows {@code e} when there is none */
+    private static <V> V stale(UpstreamCache<V> cache, String key, Exception e, String reason) throws Exception {
+        UpstreamCache.Entry<V> last = cache.peek(key);
+        if (last == null) throw e;
+
+        Degraded.mark(reason);
+        return last.value();
+    }
+
+    /** "  New   York " and "new york" share one cache entry. */
+    public static String normalize(String q) {
+        return q.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /** the key a query is cached under: its canonical location once known, else its normalized form */
+    public String locationKey(String q) {
+        return locationKeys.resolve(query(q));
+    }
+
+    /* normalized, with raw coordinates snapped to the location grid, so every endpoint shares the cell's entry */
+    private String query(String q) {
+        return locationKeys.snapQuery(normalize(q));
+    }
+
+    private UriComponentsBuilder uri(String path, String q) {
+        return UriComponentsBuilder.fromUriString(baseUrl.replaceAll("/$", "") + path)
+                .queryParam("key", apiKey)
+                .queryParam("q", q.trim())
+                .encode();
+    }
+
+    private JsonNode fetch(CircuitBreaker breaker, URI uri) throws Exception {
+        return fetch(breaker, uri, objectMapper::readTree);
+    }
+
+    /* parses straight from the response stream, no intermediate String */
+    private JsonNode fetch(CircuitBreaker breaker, URI uri, UpstreamMetrics.BodyParser<JsonNode> parser) throws Exception {
+        String operation = breaker.operation();
+        Hedger hedger = hedging.forOperation(operation);
+        return breaker.call(() -> hedger.call(() -> {
+            quota.acquire();
+            JsonNode node = metrics.timeCall(operation, () -> restTemplate.execute(uri, HttpMethod.GET, null,
+                    response -> metrics.parse(operation, response.getBody(), parser)));
+            if (node == null || node.isMissingNode()) throw new IllegalStateException("No response from weather provider");
+            return node;
+        }));
+    }
+}
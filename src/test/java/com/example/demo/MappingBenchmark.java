@@ -0,0 +1,80 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.demo.service.CompactForecast;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Per-request mapping cost of the controllers, starting from the cached
+ * forecast arrays (what the cache hands them). Run with
+ * {@code mvn -Pbenchmark clean test-compile exec:exec -Dbenchmark.include=MappingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingBenchmark {
+
+	private CompactForecast forecast;
+	private CompactForecast threeDayForecast;
+
+	@Setup
+	public void setUp() throws IOException {
+		ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		try (InputStream in = getClass().getResourceAsStream("/fixtures/forecast.json")) {
+			forecast = CompactForecast.of(objectMapper.readTree(in));
+		}
+
+		// /api/weather asks for 3 days and gets the first days of the 7-day forecast
+		threeDayForecast = forecast.limit(3);
+	}
+
+	@Benchmark
+	public WeatherController.WeatherDTO weather() {
+		return WeatherController.toDTO(threeDayForecast, UnaryOperator.identity());
+	}
+
+	@Benchmark
+	public WeatherController.ForecastDTO sevenDayForecast() {
+		return WeatherController.toForecastDTO(forecast, null, null, false, UnaryOperator.identity());
+	}
+
+	@Benchmark
+	public WeatherController.ForecastDTO sevenDayForecastImperial() {
+		return WeatherController.toForecastDTO(forecast, null, null, true, UnaryOperator.identity());
+	}
+
+	@Benchmark
+	public List<ForecastController.ForecastDayDTO> forecast() {
+		return ForecastController.toDTOs(forecast, ForecastController.Unit.C, UnaryOperator.identity());
+	}
+
+	@Benchmark
+	public List<HourlyController.HourlyDTO> hourly() {
+		return HourlyController.toDTOs(forecast, UnaryOperator.identity());
+	}
+
+	@Benchmark
+	public List<MonthlyController.MonthlyDTO> monthly() {
+		return MonthlyController.toDTOs(forecast);
+	}
+}
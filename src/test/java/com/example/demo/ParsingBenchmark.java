@@ -0,0 +1,89 @@
+package com.example.demo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.demo.service.CityIndex;
+import com.example.demo.service.CompactForecast;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * JSON tree parsing against typed binding for each recorded upstream payload,
+ * and the typed arrays a forecast is cached as.
+ * Read the throughput next to {@code gc.alloc.rate.norm} (bytes per operation)
+ * from the GC profiler the benchmark profile enables.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+	private ObjectMapper objectMapper;
+	private byte[] forecastBytes;
+	private byte[] currentBytes;
+	private byte[] searchBytes;
+	private JsonNode forecastTree;
+
+	@Setup
+	public void setUp() throws IOException {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		forecastBytes = fixture("forecast.json");
+		currentBytes = fixture("current.json");
+		searchBytes = fixture("search.json");
+		forecastTree = objectMapper.readTree(forecastBytes);
+	}
+
+	private byte[] fixture(String name) throws IOException {
+		try (InputStream in = getClass().getResourceAsStream("/fixtures/" + name)) {
+			return in.readAllBytes();
+		}
+	}
+
+	@Benchmark
+	public JsonNode forecastTree() throws IOException {
+		return objectMapper.readTree(forecastBytes);
+	}
+
+	/** what caching a parsed forecast costs, once per upstream fetch */
+	@Benchmark
+	public CompactForecast forecastCompact() {
+		return CompactForecast.of(forecastTree);
+	}
+
+	@Benchmark
+	public JsonNode currentTree() throws IOException {
+		return objectMapper.readTree(currentBytes);
+	}
+
+	@Benchmark
+	public DetailsController.WeatherResponse currentTyped() throws IOException {
+		return objectMapper.readValue(currentBytes, DetailsController.WeatherResponse.class);
+	}
+
+	@Benchmark
+	public JsonNode searchTree() throws IOException {
+		return objectMapper.readTree(searchBytes);
+	}
+
+	@Benchmark
+	public CityIndex.City[] searchTyped() throws IOException {
+		return objectMapper.readValue(searchBytes, CityIndex.City[].class);
+	}
+}
@@ -0,0 +1,166 @@
+package com.example.demo;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.ExpectedCount.manyTimes;
+import static org.springframework.test.web.client.ExpectedCount.once;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.hamcrest.Matchers.containsString;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.UnaryOperator;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.demo.service.CompactForecast;
+import com.example.demo.service.IconCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+/**
+ * Pins the exact JSON bytes of /api/weather and /api/weather/forecast
+ * against the recorded forecast.json fixture, the conditional GET
+ * and content negotiation behaviour of the pre-serialized responses, and
+ * the local icon endpoint.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class WeatherControllerTests {
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private RestTemplate restTemplate;
+
+	@BeforeEach
+	void stubProvider() throws Exception {
+		MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build()
+				.expect(manyTimes(), requestTo(containsString("/forecast.json")))
+				.andRespond(withSuccess(new ClassPathResource("fixtures/forecast.json"), MediaType.APPLICATION_JSON));
+	}
+
+	@Test
+	void weatherResponseIsUnchanged() throws Exception {
+		assertEquals(expected("weather.json"), body("/api/weather?city=London"));
+	}
+
+	@Test
+	void sevenDayResponseIsUnchanged() throws Exception {
+		assertEquals(expected("weather-forecast.json"), body("/api/weather/forecast?city=London"));
+		assertEquals(expected("weather-forecast-imperial.json"), body("/api/weather/forecast?city=London&units=imperial"));
+	}
+
+	@Test
+	void matchingEtagIsAnsweredWithNotModified() throws Exception {
+		MockHttpServletResponse first = mvc.perform(get("/api/weather?city=London")).andReturn().getResponse();
+		String etag = first.getHeader("ETag");
+		assertNotNull(etag);
+		assertNotNull(first.getHeader("Last-Modified"));
+
+		MockHttpServletResponse second = mvc.perform(get("/api/weather?city=london").header("If-None-Match", etag))
+				.andReturn().getResponse();
+		assertEquals(304, second.getStatus());
+		assertEquals(0, second.getContentLength());
+	}
+
+	@Test
+	void compactEncodingsAreNegotiated() throws Exception {
+		MockHttpServletResponse cbor = mvc.perform(get("/api/weather/forecast?city=London")
+				.accept("application/cbor")).andReturn().getResponse();
+		assertEquals("application/cbor", cbor.getContentType());
+		assertEquals(new ObjectMapper().readTree(expected("weather-forecast.json")),
+				new CBORMapper().readTree(cbor.getContentAsByteArray()));
+
+		MockHttpServletResponse gzipped = mvc.perform(get("/api/hourly?city=London&icons=code")
+				.header("Accept-Encoding", "gzip")).andReturn().getResponse();
+		assertEquals("gzip", gzipped.getHeader("Content-Encoding"));
+		assertNotNull(gzipped.getHeader("X-Icon-Base"));
+		String json;
+		try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.getContentAsByteArray()))) {
+			json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		assertTrue(json.contains("\"icon\":\"day/"));
+		assertFalse(json.contains("cdn.weatherapi.com"));
+
+		String identityEtag = mvc.perform(get("/api/hourly?city=London&icons=code")).andReturn().getResponse()
+				.getHeader("ETag");
+		assertTrue(identityEtag.matches("\"[0-9a-f]{32}\""));
+		assertEquals(identityEtag.replace("\"", "").concat("-gzip"), gzipped.getHeader("ETag").replace("\"", ""));
+	}
+
+	@Test
+	void iconsAreFetchedOnceAndServedImmutable() throws Exception {
+		byte[] png = {(byte) 0x89, 'P', 'N', 'G'};
+		MockRestServiceServer cdn = MockRestServiceServer.bindTo(restTemplate).build();
+		cdn.expect(once(), requestTo("https://cdn.weatherapi.com/weather/64x64/night/116.png"))
+				.andRespond(withSuccess(png, MediaType.IMAGE_PNG));
+
+		for (int i = 0; i < 2; i++) {
+			MockHttpServletResponse icon = mvc.perform(get("/api/icons/64x64/night/116.png")).andReturn().getResponse();
+			assertEquals(200, icon.getStatus());
+			assertArrayEquals(png, icon.getContentAsByteArray());
+			assertTrue(icon.getHeader("Cache-Control").contains("immutable"));
+		}
+		cdn.verify();
+
+		assertEquals(404, mvc.perform(get("/api/icons/64x64/noon/116.png")).andReturn().getResponse().getStatus());
+
+		IconCache local = new IconCache(restTemplate, "https://cdn.weatherapi.com/weather/", "https://api.example.com/api/icons", 16);
+		assertEquals("https://api.example.com/api/icons/64x64/day/113.png",
+				local.publicIcon("//cdn.weatherapi.com/weather/64x64/day/113.png"));
+		assertEquals("https://api.example.com/api/icons/64x64/", local.iconBase("64x64"));
+	}
+
+	@Test
+	void unitSpellingsShareOneVariantAndUnknownUnitsFallBack() throws Exception {
+		assertEquals(body("/api/forecast?city=London&unit=F"), body("/api/forecast?city=London&unit=f"));
+		assertEquals(body("/api/forecast?city=London"), body("/api/forecast?city=London&unit=kelvin"));
+		assertEquals(expected("weather-forecast.json"), body("/api/weather/forecast?city=London&units=SI"));
+		assertEquals(expected("weather-forecast-imperial.json"), body("/api/weather/forecast?city=London&units=Imperial"));
+	}
+
+	@Test
+	void timezoneIsOmittedOnlyWithoutLocation() throws Exception {
+		ObjectMapper mapper = new ObjectMapper();
+		JsonNode withoutTz = mapper.readTree("{\"location\":{\"lat\":1.5,\"lon\":2},\"forecast\":{\"forecastday\":[]}}");
+		JsonNode withoutLocation = mapper.readTree("{\"forecast\":{\"forecastday\":[]}}");
+
+		assertEquals("{\"timezone\":null,\"daily\":[],\"lon\":2,\"lat\":1.5}", mapper.writeValueAsString(
+				WeatherController.toForecastDTO(CompactForecast.of(withoutTz), null, null, false, UnaryOperator.identity())));
+		assertEquals("{\"daily\":[],\"lon\":2.0,\"lat\":1.5}", mapper.writeValueAsString(
+				WeatherController.toForecastDTO(CompactForecast.of(withoutLocation), 1.5, 2.0, false, UnaryOperator.identity())));
+	}
+
+	@Test
+	void smallCoordinatesAreWrittenInPlainDecimals() {
+		assertEquals("0.000100,-51.500000", WeatherController.coordinates(1.0E-4, -51.5));
+	}
+
+	private String body(String uri) throws Exception {
+		return mvc.perform(get(uri)).andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+	}
+
+	private String expected(String name) throws Exception {
+		return new ClassPathResource("expected/" + name).getContentAsString(StandardCharsets.UTF_8);
+	}
+
+}
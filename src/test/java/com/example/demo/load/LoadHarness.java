@@ -0,0 +1,254 @@
+package com.example.demo.load;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.DemoApplication;
+
+/**
+ * End-to-end load run: boots the application in-process against an
+ * {@link UpstreamSimulator}, drives every /api endpoint from closed-loop
+ * virtual-thread clients, and prints throughput, p50/p99/p999 per endpoint
+ * and how many calls reached the upstream.
+ *
+ * Cities are drawn Zipf-distributed over the gazetteer ranked by population,
+ * so a few hot locations dominate the way real traffic does.
+ *
+ * The application serves requests on Tomcat's platform worker pool unless
+ * {@code -Dload.threads=virtual}, so the two thread models can be compared
+ * against the same simulated upstream.
+ *
+ * {@code mvn -Pload test-compile exec:exec [-Dload.duration=60 -Dload.clients=128 -Dload.threads=virtual -Dsim.error-rate=0.05]};
+ * extra program arguments (e.g. {@code --weatherapi.quota.per-minute=600}) are passed to the application.
+ */
+public final class LoadHarness {
+
+	private record Endpoint(String name, int weight, Function<String, HttpRequest.Builder> request) {
+	}
+
+	private static final class Stats {
+		final Histogram latency = new ConcurrentHistogram(Duration.ofMinutes(1).toNanos(), 3);
+		final LongAdder errors = new LongAdder();
+	}
+
+	private final String apiBase;
+	private final List<String> cities;
+	private final double[] cumulative;
+	private final List<Endpoint> mix;
+	private final int totalWeight;
+	private final Map<String, Stats> stats = new LinkedHashMap<>();
+	private final HttpClient http = HttpClient.newBuilder()
+			.version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5))
+			.build();
+
+	LoadHarness(String apiBase, List<String> cities, double zipfExponent) {
+		this.apiBase = apiBase;
+		this.cities = cities;
+		this.cumulative = zipf(cities.size(), zipfExponent);
+		this.mix = List.of(
+				new Endpoint("weather", 30, c -> get("/weather?city=" + encode(c))),
+				new Endpoint("details", 15, c -> get("/details?city=" + encode(c))),
+				new Endpoint("forecast", 15, c -> get("/forecast?city=" + encode(c))),
+				new Endpoint("hourly", 10, c -> get("/hourly?city=" + encode(c))),
+				new Endpoint("map", 10, c -> get("/map?city=" + encode(c))),
+				new Endpoint("cities", 10, c -> get("/cities?q=" + encode(prefix(c)))),
+				new Endpoint("weather/forecast", 5, c -> get("/weather/forecast?city=" + encode(c))),
+				new Endpoint("weather/cities", 2, c -> get("/weather/cities?q=" + encode(prefix(c)))),
+				new Endpoint("monthly", 2, c -> get("/monthly?city=" + encode(c))),
+				new Endpoint("batch", 1, c -> batch()));
+		this.totalWeight = mix.stream().mapToInt(Endpoint::weight).sum();
+		mix.forEach(e -> stats.put(e.name(), new Stats()));
+	}
+
+	public static void main(String[] args) throws Exception {
+		Duration duration = Duration.ofSeconds(Long.getLong("load.duration", 30));
+		Duration warmup = Duration.ofSeconds(Long.getLong("load.warmup", 5));
+		int clients = Integer.getInteger("load.clients", 64);
+		double zipf = Double.parseDouble(System.getProperty("load.zipf", "1.1"));
+		String threads = System.getProperty("load.threads", "platform");
+		if (!threads.equals("platform") && !threads.equals("virtual")) {
+			throw new IllegalArgumentException("load.threads must be platform or virtual, not " + threads);
+		}
+
+		// devtools would relaunch this main method in a restart class loader
+		System.setProperty("spring.devtools.restart.enabled", "false");
+
+		try (UpstreamSimulator simulator = UpstreamSimulator.start(UpstreamSimulator.Faults.fromSystemProperties())) {
+			String[] appArgs = Arrays.copyOf(args, args.length + 4);
+			appArgs[args.length] = "--server.port=0";
+			appArgs[args.length + 1] = "--weatherapi.base.url=" + simulator.baseUrl();
+			appArgs[args.length + 2] = "--spring.threads.virtual.enabled=" + threads.equals("virtual");
+			appArgs[args.length + 3] = "--logging.level.root=WARN";
+
+			try (ConfigurableApplicationContext app = new SpringApplicationBuilder(DemoApplication.class).run(appArgs)) {
+				String port = app.getEnvironment().getProperty("local.server.port");
+				LoadHarness harness = new LoadHarness("http://127.0.0.1:" + port + "/api", gazetteer(), zipf);
+
+				harness.run(clients, warmup);
+				harness.reset();
+				simulator.reset();
+				long started = System.nanoTime();
+				harness.run(clients, duration);
+				System.out.printf("%nrequest threads: %s, clients: %d%n", threads, clients);
+				harness.report(System.nanoTime() - started, simulator);
+			}
+		}
+	}
+
+	void run(int clients, Duration duration) throws InterruptedException {
+		long deadline = System.nanoTime() + duration.toNanos();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int i = 0; i < clients; i++) {
+				executor.execute(() -> {
+					while (System.nanoTime() < deadline) {
+						call();
+					}
+				});
+			}
+		}
+	}
+
+	private void call() {
+		Endpoint endpoint = pickEndpoint();
+		Stats s = stats.get(endpoint.name());
+		long start = System.nanoTime();
+		try {
+			HttpResponse<Void> response = http.send(endpoint.request().apply(pickCity()).build(),
+					HttpResponse.BodyHandlers.discarding());
+			if (response.statusCode() >= 400) {
+				s.errors.increment();
+			}
+		} catch (IOException e) {
+			s.errors.increment();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		s.latency.recordValue(System.nanoTime() - start);
+	}
+
+	void reset() {
+		stats.values().forEach(s -> {
+			s.latency.reset();
+			s.errors.reset();
+		});
+	}
+
+	void report(long elapsedNanos, UpstreamSimulator simulator) {
+		double seconds = elapsedNanos / 1e9;
+		long total = 0;
+		System.out.printf("%n%-18s %9s %7s %9s %9s %9s %9s%n",
+				"endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms");
+		for (Map.Entry<String, Stats> e : stats.entrySet()) {
+			Histogram h = e.getValue().latency;
+			total += h.getTotalCount();
+			System.out.printf("%-18s %9d %7d %9.1f %9.2f %9.2f %9.2f%n",
+					e.getKey(), h.getTotalCount(), e.getValue().errors.sum(), h.getTotalCount() / seconds,
+					millis(h, 50), millis(h, 99), millis(h, 99.9));
+		}
+		System.out.printf("%-18s %9d %7s %9.1f%n", "total", total, "", total / seconds);
+
+		long upstream = Arrays.stream(new String[] { "forecast.json", "current.json", "search.json" })
+				.mapToLong(simulator::calls).sum();
+		System.out.printf("%nupstream calls: %s%n", simulator.counts());
+		System.out.printf("upstream calls per 1000 requests: %.1f%n", total == 0 ? 0 : upstream * 1000.0 / total);
+	}
+
+	private static double millis(Histogram h, double percentile) {
+		return h.getValueAtPercentile(percentile) / 1e6;
+	}
+
+	private Endpoint pickEndpoint() {
+		int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+		for (Endpoint e : mix) {
+			roll -= e.weight();
+			if (roll < 0) return e;
+		}
+		return mix.get(0);
+	}
+
+	private String pickCity() {
+		int i = Arrays.binarySearch(cumulative, ThreadLocalRandom.current().nextDouble());
+		return cities.get(Math.min(i < 0 ? -i - 1 : i, cities.size() - 1));
+	}
+
+	/** cumulative Zipf weights over ranks 1..n */
+	private static double[] zipf(int n, double exponent) {
+		double[] cumulative = new double[n];
+		double sum = 0;
+		for (int rank = 1; rank <= n; rank++) {
+			sum += 1 / Math.pow(rank, exponent);
+			cumulative[rank - 1] = sum;
+		}
+		for (int i = 0; i < n; i++) {
+			cumulative[i] /= sum;
+		}
+		return cumulative;
+	}
+
+	/** what an autocomplete box sends after one to four keystrokes */
+	private static String prefix(String city) {
+		return city.substring(0, Math.min(city.length(), ThreadLocalRandom.current().nextInt(1, 5)));
+	}
+
+	private HttpRequest.Builder get(String path) {
+		return HttpRequest.newBuilder(URI.create(apiBase + path)).timeout(Duration.ofSeconds(30)).GET();
+	}
+
+	private HttpRequest.Builder batch() {
+		List<String> picked = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			picked.add("\"" + pickCity().replace("\"", "") + "\"");
+		}
+		String body = "{\"view\":\"map\",\"locations\":[" + String.join(",", picked) + "]}";
+		return HttpRequest.newBuilder(URI.create(apiBase + "/batch"))
+				.timeout(Duration.ofSeconds(30))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body));
+	}
+
+	private static String encode(String value) {
+		return URLEncoder.encode(value, StandardCharsets.UTF_8);
+	}
+
+	/** gazetteer city names, most populous first */
+	private static List<String> gazetteer() throws IOException {
+		List<String[]> rows = new ArrayList<>();
+		try (InputStream in = LoadHarness.class.getResourceAsStream("/gazetteer/cities.csv");
+				BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.isBlank() || line.startsWith("#")) continue;
+				rows.add(line.split(","));
+			}
+		}
+		rows.sort(Comparator.comparingLong((String[] row) -> Long.parseLong(row[5].trim())).reversed());
+		return rows.stream().map(row -> row[0]).toList();
+	}
+}
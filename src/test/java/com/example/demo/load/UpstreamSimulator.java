@@ -0,0 +1,168 @@
+package com.example.demo.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Offline stand-in for WeatherAPI. Serves the recorded fixtures for
+ * forecast.json, current.json and search.json under {@code /v1}, whatever
+ * the query, so pointing {@code weatherapi.base.url} at {@link #baseUrl()}
+ * takes the network and the real quota out of the picture.
+ *
+ * Latency is drawn from a log-normal fitted to a median and a p99; errors
+ * (500) and rate limits (429 with Retry-After) are injected at fixed rates.
+ */
+public final class UpstreamSimulator implements AutoCloseable {
+
+	private static final String[] ENDPOINTS = { "forecast.json", "current.json", "search.json" };
+
+	/** z-score of the 99th percentile of a standard normal */
+	private static final double Z_99 = 2.3263;
+
+	public record Faults(Duration latencyMedian, Duration latencyP99, double errorRate, double rateLimitRate) {
+
+		public static final Faults NONE = new Faults(Duration.ZERO, Duration.ZERO, 0, 0);
+
+		/** sim.latency.median, sim.latency.p99 (ms), sim.error-rate, sim.rate-limit-rate */
+		public static Faults fromSystemProperties() {
+			return new Faults(
+					Duration.ofMillis(Long.getLong("sim.latency.median", 120)),
+					Duration.ofMillis(Long.getLong("sim.latency.p99", 800)),
+					Double.parseDouble(System.getProperty("sim.error-rate", "0.01")),
+					Double.parseDouble(System.getProperty("sim.rate-limit-rate", "0.005")));
+		}
+
+		long sampleMillis() {
+			long median = latencyMedian.toMillis();
+			if (median <= 0) return 0;
+			double sigma = Math.log(Math.max(latencyP99.toMillis(), median) / (double) median) / Z_99;
+			return Math.round(median * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+		}
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+	private final Map<String, byte[]> fixtures = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> counts = new ConcurrentHashMap<>();
+	private volatile Faults faults;
+
+	private UpstreamSimulator(Faults faults) throws IOException {
+		this.faults = faults;
+		for (String name : ENDPOINTS) {
+			try (InputStream in = UpstreamSimulator.class.getResourceAsStream("/fixtures/" + name)) {
+				fixtures.put(name, in.readAllBytes());
+			}
+		}
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/v1/", this::handle);
+		server.setExecutor(executor);
+	}
+
+	public static UpstreamSimulator start(Faults faults) throws IOException {
+		UpstreamSimulator simulator = new UpstreamSimulator(faults);
+		simulator.server.start();
+		return simulator;
+	}
+
+	public String baseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+	}
+
+	public void faults(Faults faults) {
+		this.faults = faults;
+	}
+
+	/** requests seen for an endpoint, e.g. {@code calls("forecast.json")} */
+	public long calls(String endpoint) {
+		return count(endpoint);
+	}
+
+	/** responses with an injected status (500 or 429) */
+	public long injected(int status) {
+		return count(String.valueOf(status));
+	}
+
+	public Map<String, Long> counts() {
+		Map<String, Long> snapshot = new TreeMap<>();
+		counts.forEach((key, adder) -> snapshot.put(key, adder.sum()));
+		return snapshot;
+	}
+
+	public void reset() {
+		counts.clear();
+	}
+
+	private long count(String key) {
+		LongAdder adder = counts.get(key);
+		return adder == null ? 0 : adder.sum();
+	}
+
+	private void increment(String key) {
+		counts.computeIfAbsent(key, k -> new LongAdder()).increment();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (exchange) {
+			String endpoint = exchange.getRequestURI().getPath().substring("/v1/".length());
+			byte[] body = fixtures.get(endpoint);
+			if (body == null) {
+				send(exchange, 400, error(1005, "API request url is invalid."));
+				return;
+			}
+			increment(endpoint);
+
+			Faults f = faults;
+			long delay = f.sampleMillis();
+			if (delay > 0) {
+				Thread.sleep(delay);
+			}
+
+			double roll = ThreadLocalRandom.current().nextDouble();
+			if (roll < f.rateLimitRate()) {
+				increment("429");
+				exchange.getResponseHeaders().set("Retry-After", "1");
+				send(exchange, 429, error(2007, "API key has exceeded calls per month quota."));
+			} else if (roll < f.rateLimitRate() + f.errorRate()) {
+				increment("500");
+				send(exchange, 500, error(9999, "Internal application error."));
+			} else {
+				send(exchange, 200, body);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static byte[] error(int code, String message) {
+		return ("{\"error\":{\"code\":" + code + ",\"message\":\"" + message + "\"}}").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void send(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.close();
+	}
+}
@@ -0,0 +1,102 @@
+package com.example.demo.load;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+/**
+ * The application reaches the provider only through weatherapi.base.url,
+ * so the simulator sees every upstream call. These run against a real port
+ * (streams, pooled connections) rather than MockMvc.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class UpstreamSimulatorTests {
+
+	private static final UpstreamSimulator simulator = start();
+
+	@Autowired
+	private TestRestTemplate http;
+
+	@DynamicPropertySource
+	static void upstream(DynamicPropertyRegistry registry) {
+		registry.add("weatherapi.base.url", simulator::baseUrl);
+	}
+
+	@BeforeEach
+	void resetCounts() {
+		simulator.reset();
+	}
+
+	@AfterAll
+	static void stop() {
+		simulator.close();
+	}
+
+	@Test
+	void endpointsAreServedFromTheSimulator() {
+		ResponseEntity<String> weather = http.getForEntity("/api/weather?city=Lisbon", String.class);
+		assertEquals(200, weather.getStatusCode().value());
+		assertTrue(weather.getBody().contains("\"city\":\"London\""));
+
+		http.getForEntity("/api/details?city=Lisbon", String.class);
+		assertEquals(1, simulator.calls("forecast.json"));
+		assertEquals(0, simulator.calls("current.json"));
+	}
+
+	@Test
+	void viewportListsFetchedLocations() {
+		http.getForEntity("/api/weather?city=London", String.class);
+
+		ResponseEntity<String> area = http.getForEntity(
+				"/api/map/area?north=52&south=51&east=0.5&west=-0.5&zoom=8", String.class);
+		assertEquals(200, area.getStatusCode().value());
+		assertTrue(area.getBody().contains("\"city\":\"London\""));
+
+		assertEquals(400, http.getForEntity(
+				"/api/map/area?north=10&south=20&east=0&west=0", String.class).getStatusCode().value());
+	}
+
+	@Test
+	void liveSubscribersShareOnePoller() throws Exception {
+		HttpClient client = HttpClient.newHttpClient();
+		URI uri = URI.create(http.getRootUri() + "/api/live?locations=Oslo");
+
+		List<CompletableFuture<String>> events = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			events.add(client.sendAsync(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofLines())
+					.thenApply(response -> response.body().filter(line -> line.startsWith("data:")).findFirst().orElse("")));
+		}
+
+		for (CompletableFuture<String> event : events) {
+			assertTrue(event.get(10, TimeUnit.SECONDS).contains("\"city\":\"London\""));
+		}
+		assertEquals(1, simulator.calls("current.json") + simulator.calls("forecast.json"));
+	}
+
+	private static UpstreamSimulator start() {
+		try {
+			return UpstreamSimulator.start(UpstreamSimulator.Faults.NONE);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
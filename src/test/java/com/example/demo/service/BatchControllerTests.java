@@ -0,0 +1,167 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.client.ExpectedCount.manyTimes;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withBadRequest;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withServerError;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.hamcrest.Matchers.containsString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * POST /api/batch against a stubbed provider that answers current.json for
+ * any city, each at its own coordinates: deduplication on the cache key,
+ * per-item errors and degraded markers, the per-batch parallelism and the
+ * size limit.
+ */
+@SpringBootTest(properties = {
+		"weatherapi.batch.parallelism=2",
+		"weatherapi.batch.max-items=8",
+		"weatherapi.cache.current-ttl=1ms",
+		"weatherapi.cache.stale-while-revalidate=0s",
+		"weatherapi.refresh.enabled=false"})
+@AutoConfigureMockMvc
+class BatchControllerTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private final Map<String, LongAdder> calls = new ConcurrentHashMap<>();
+	private final Map<String, Integer> latitudes = new ConcurrentHashMap<>();
+	private final AtomicInteger nextLatitude = new AtomicInteger();
+	private final Set<String> failing = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger mostRunning = new AtomicInteger();
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private RestTemplate restTemplate;
+
+	@BeforeEach
+	void stubProvider() {
+		MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build()
+				.expect(manyTimes(), requestTo(containsString("/current.json")))
+				.andRespond(this::current);
+	}
+
+	@Test
+	void spellingsOfOneLocationAreFetchedOnce() throws Exception {
+		JsonNode items = batch("\"Lisbon\", \" lisbon \", \"LISBON\", \"Porto\"").path("body");
+
+		assertEquals(2, items.size());
+		assertEquals("Lisbon", items.get(0).path("query").textValue());
+		assertEquals("Porto", items.get(1).path("query").textValue());
+		assertEquals(1, calls.get("lisbon").sum());
+	}
+
+	@Test
+	void aFailedLocationFailsOnlyItsItem() throws Exception {
+		JsonNode items = batch("\"Nowhere\", \"Madrid\"").path("body");
+
+		assertEquals("Weather provider returned 400", items.get(0).path("error").textValue());
+		assertTrue(items.get(0).path("data").isNull());
+		assertTrue(items.get(1).path("error").isNull());
+		assertEquals("madrid", items.get(1).path("data").path("city").textValue());
+	}
+
+	@Test
+	void atMostParallelismLocationsAreFetchedAtOnce() throws Exception {
+		JsonNode items = batch("\"Oslo\", \"Bergen\", \"Turku\", \"Tampere\", \"Malmo\", \"Aarhus\"").path("body");
+
+		assertEquals(6, items.size());
+		assertEquals(2, mostRunning.get());
+	}
+
+	@Test
+	void distinctLocationsAreLimited() throws Exception {
+		String tooMany = "\"A1\", \"A2\", \"A3\", \"A4\", \"A5\", \"A6\", \"A7\", \"A8\", \"A9\"";
+		assertEquals(400, batch(tooMany).path("status").asInt());
+		assertTrue(calls.isEmpty());
+
+		String manySpellings = "\"Rome\", \"rome\", \"ROME\", \" Rome\", \"Rome \", \"rOme\", \"roMe\", \"romE\", \"RoMe\"";
+		assertEquals(1, batch(manySpellings).path("body").size());
+	}
+
+	@Test
+	void itemsServedFromLastKnownGoodAreMarked() throws Exception {
+		batch("\"Vienna\", \"Graz\"");
+		Thread.sleep(5);
+		failing.add("graz");
+
+		JsonNode response = batch("\"Vienna\", \"Graz\"");
+		JsonNode items = response.path("body");
+		assertNull(items.get(0).get("degraded"));
+		assertEquals("upstream-error", items.get(1).path("degraded").textValue());
+		assertEquals("graz", items.get(1).path("data").path("city").textValue());
+		assertEquals("upstream-error", response.path("header").textValue());
+	}
+
+	/* {"status": ..., "header": X-Weather-Degraded, "body": [items]} */
+	private JsonNode batch(String locations) throws Exception {
+		MockHttpServletResponse response = mvc.perform(post("/api/batch")
+				.contentType(MediaType.APPLICATION_JSON)
+				.content("{\"view\":\"map\",\"locations\":[" + locations + "]}"))
+				.andReturn().getResponse();
+		ObjectNode out = objectMapper.createObjectNode();
+		out.put("status", response.getStatus());
+		out.put("header", response.getHeader(Degraded.HEADER));
+		out.set("body", objectMapper.readTree(response.getContentAsString(StandardCharsets.UTF_8)));
+		return out;
+	}
+
+	/* the fixture renamed to the queried city and moved to a latitude of its own */
+	private ClientHttpResponse current(ClientHttpRequest request) throws IOException {
+		String city = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("q");
+		String key = WeatherApiClient.normalize(city);
+		calls.computeIfAbsent(key, k -> new LongAdder()).increment();
+		if (key.equals("nowhere")) return withBadRequest().createResponse(request);
+		if (failing.contains(key)) return withServerError().createResponse(request);
+
+		mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+		try {
+			Thread.sleep(50);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			running.decrementAndGet();
+		}
+
+		ObjectNode payload = (ObjectNode) objectMapper.readTree(
+				new ClassPathResource("fixtures/current.json").getInputStream());
+		ObjectNode location = (ObjectNode) payload.path("location");
+		location.put("name", city.trim());
+		location.put("lat", latitudes.computeIfAbsent(key, k -> nextLatitude.incrementAndGet()));
+		return withSuccess(objectMapper.writeValueAsBytes(payload), MediaType.APPLICATION_JSON).createResponse(request);
+	}
+}
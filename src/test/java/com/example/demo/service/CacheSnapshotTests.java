@@ -0,0 +1,56 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class CacheSnapshotTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void entriesComeBackWithTheirTimestamps() throws Exception {
+		long now = System.currentTimeMillis();
+		JsonNode london = objectMapper.readTree("{\"location\":{\"name\":\"London\"}}");
+		Path file = dir.resolve("cache.snapshot");
+
+		CacheSnapshot.write(file, Map.of(
+				"forecast", Map.of(
+						"london", new UpstreamCache.Entry<>(london, now - 1000, now + 60_000),
+						"paris", new UpstreamCache.Entry<>(london, now - 7_200_000, now - 3_600_000))),
+				objectMapper);
+
+		CacheSnapshot snapshot = CacheSnapshot.open(file, objectMapper);
+		assertNotNull(snapshot);
+		assertEquals(2, snapshot.size());
+
+		UpstreamCache.Entry<JsonNode> entry = snapshot.lookup("forecast", "london");
+		assertEquals("London", entry.value().path("location").path("name").asText());
+		assertEquals(now + 60_000, entry.expiresAt());
+		assertNull(snapshot.lookup("current", "london"));
+
+		// lazily, through the warm source, and dropped once past the stale window
+		UpstreamCache<JsonNode> cache = new UpstreamCache<>(100, Duration.ofMinutes(10), Runnable::run);
+		cache.warmFrom(key -> snapshot.lookup("forecast", key));
+		assertEquals(london, cache.get("london", Duration.ofMinutes(30), () -> null));
+		assertNull(cache.peek("paris"));
+	}
+
+	@Test
+	void missingFileIsNoSnapshot() throws Exception {
+		assertNull(CacheSnapshot.open(dir.resolve("absent"), objectMapper));
+	}
+}
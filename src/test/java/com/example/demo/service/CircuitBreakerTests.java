@@ -0,0 +1,72 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+class CircuitBreakerTests {
+
+	private final CircuitBreaker.Settings settings = new CircuitBreaker.Settings(
+			4, 4, 50, 100, Duration.ofSeconds(5), Duration.ofMillis(20), 1);
+
+	@Test
+	void opensOnFailureRateAndClosesAfterSuccessfulProbe() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("forecast", settings);
+
+		breaker.call(() -> "ok");
+		breaker.call(() -> "ok");
+		fail(breaker);
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+		fail(breaker);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+		assertThrows(CircuitOpenException.class, () -> breaker.call(() -> "not called"));
+
+		Thread.sleep(30);
+		assertEquals("probe", breaker.call(() -> "probe"));
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+	}
+
+	@Test
+	void failedProbeReopens() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("current", settings);
+		for (int i = 0; i < 4; i++) fail(breaker);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+
+		Thread.sleep(30);
+		fail(breaker);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+	}
+
+	@Test
+	void providerRefusalsOpenButBadRequestsDoNot() throws Exception {
+		CircuitBreaker breaker = new CircuitBreaker("forecast", settings);
+		for (HttpStatus status : new HttpStatus[] {HttpStatus.BAD_REQUEST, HttpStatus.NOT_FOUND,
+				HttpStatus.BAD_REQUEST, HttpStatus.NOT_FOUND}) {
+			reply(breaker, status);
+		}
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+
+		reply(breaker, HttpStatus.TOO_MANY_REQUESTS);
+		reply(breaker, HttpStatus.FORBIDDEN);
+		assertEquals(CircuitBreaker.State.OPEN, breaker.state());
+	}
+
+	private static void reply(CircuitBreaker breaker, HttpStatus status) {
+		assertThrows(HttpClientErrorException.class, () -> breaker.call(() -> {
+			throw HttpClientErrorException.create(status, status.getReasonPhrase(), null, null, null);
+		}));
+	}
+
+	private static void fail(CircuitBreaker breaker) {
+		assertThrows(IllegalStateException.class, () -> breaker.call(() -> {
+			throw new IllegalStateException("upstream down");
+		}));
+	}
+
+}
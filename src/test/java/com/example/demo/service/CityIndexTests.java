@@ -0,0 +1,39 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.service.CityIndex.City;
+
+class CityIndexTests {
+
+	@Test
+	void prefixMatchesAreAccentFoldedAndRankedByPopulation() {
+		CityIndex index = new CityIndex(null, 16);
+		index.add(new City("London", "Ontario", "Canada", 42.98, -81.25, 420000));
+		index.add(new City("London", "City of London, Greater London", "United Kingdom", 51.52, -0.11, 9300000));
+		index.add(new City("Londonderry", "Derry", "United Kingdom", 55.0, -7.32, 85000));
+		index.add(new City("São Paulo", "Sao Paulo", "Brazil", -23.55, -46.63, 22400000));
+
+		List<City> lon = index.prefix("  LON", 5);
+		assertEquals(3, lon.size());
+		assertEquals("United Kingdom", lon.get(0).country());
+
+		assertEquals("São Paulo", index.prefix("sao p", 5).get(0).name());
+		assertTrue(index.prefix("x", 5).isEmpty());
+	}
+
+	@Test
+	void samePlaceFromAnotherSourceIsNotDuplicated() {
+		CityIndex index = new CityIndex(null, 16);
+		index.add(new City("London", "Greater London", "United Kingdom", 51.51, -0.13, 9300000));
+		index.add(new City("London", "City of London, Greater London", "United Kingdom", 51.52, -0.11, 0));
+
+		assertEquals(1, index.size());
+	}
+
+}
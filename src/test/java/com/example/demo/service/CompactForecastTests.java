@@ -0,0 +1,74 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.service.CompactForecast.Day;
+import com.example.demo.service.CompactForecast.Hour;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class CompactForecastTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void forecastPayloadRebuildsToTheSameTree() throws Exception {
+		JsonNode payload;
+		try (InputStream in = getClass().getResourceAsStream("/fixtures/forecast.json")) {
+			payload = new ForecastPayloadReader(objectMapper).read(in);
+		}
+
+		assertEquals(payload, CompactForecast.of(payload).tree());
+	}
+
+	@Test
+	void fieldsKeepTheirUpstreamTypes() throws Exception {
+		CompactForecast forecast = CompactForecast.of(objectMapper.readTree("""
+				{"location": {"name": "London"},
+				 "forecast": {"forecastday": [
+				   {"date": "2025-10-18", "date_epoch": 1760745600,
+				    "day": {"maxtemp_c": 15.0, "maxwind_mph": 11, "maxwind_kph": 17.7,
+				            "condition": {"text": "Sunny", "icon": "//cdn/day/113.png", "code": 1000}},
+				    "hour": [{"time": "2025-10-18 00:00", "temp_c": 6.5, "humidity": 60}]},
+				   {"date": "2025-10-19", "day": {}}]}}
+				"""));
+
+		assertEquals(2, forecast.days());
+		assertEquals(15.0, forecast.dayNumber(0, Day.MAXTEMP_C));
+		assertEquals(11, forecast.dayNumber(0, Day.MAXWIND_MPH));
+		assertEquals(17.7, forecast.day(0, Day.MAXWIND_KPH));
+		assertEquals(1760745600, forecast.dateEpoch(0));
+		assertEquals("Sunny", forecast.dayCondition(0));
+
+		assertNull(forecast.dateEpoch(1));
+		assertNull(forecast.dayNumber(1, Day.MAXTEMP_C));
+		assertTrue(Double.isNaN(forecast.day(1, Day.MAXTEMP_C)));
+		assertNull(forecast.dayIcon(1));
+
+		assertEquals(1, forecast.hours());
+		assertEquals(60, forecast.hour(0, Hour.HUMIDITY));
+		assertTrue(Double.isNaN(forecast.hour(0, Hour.WIND_KPH)));
+	}
+
+	@Test
+	void limitSharesTheArrays() throws Exception {
+		CompactForecast forecast;
+		try (InputStream in = getClass().getResourceAsStream("/fixtures/forecast.json")) {
+			forecast = CompactForecast.of(new ForecastPayloadReader(objectMapper).read(in));
+		}
+
+		CompactForecast threeDays = forecast.limit(3);
+		assertEquals(3, threeDays.days());
+		assertEquals(24, threeDays.hours());
+		assertEquals(forecast.date(2), threeDays.date(2));
+		assertSame(forecast, forecast.limit(7));
+		assertEquals(0, forecast.limit(0).hours());
+	}
+}
@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The field-selective forecast reader against a full tree parse of the same
+ * bytes, i.e. what each upstream forecast fetch costs before caching, and the
+ * cost of copying the result into the cached arrays and rebuilding it as JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ForecastPayloadReaderBenchmark {
+
+	private ObjectMapper objectMapper;
+	private ForecastPayloadReader reader;
+	private byte[] forecastBytes;
+	private JsonNode payload;
+	private CompactForecast compact;
+
+	@Setup
+	public void setUp() throws IOException {
+		objectMapper = Jackson2ObjectMapperBuilder.json().build();
+		reader = new ForecastPayloadReader(objectMapper);
+		try (InputStream in = getClass().getResourceAsStream("/fixtures/forecast.json")) {
+			forecastBytes = in.readAllBytes();
+		}
+		payload = reader.read(new ByteArrayInputStream(forecastBytes));
+		compact = CompactForecast.of(payload);
+	}
+
+	@Benchmark
+	public JsonNode fullTree() throws IOException {
+		return objectMapper.readTree(new ByteArrayInputStream(forecastBytes));
+	}
+
+	@Benchmark
+	public JsonNode selective() throws IOException {
+		return reader.read(new ByteArrayInputStream(forecastBytes));
+	}
+
+	@Benchmark
+	public CompactForecast compact() {
+		return CompactForecast.of(payload);
+	}
+
+	/** what a cache snapshot pays per forecast */
+	@Benchmark
+	public JsonNode tree() {
+		return compact.tree();
+	}
+}
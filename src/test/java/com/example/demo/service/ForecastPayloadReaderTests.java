@@ -0,0 +1,41 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class ForecastPayloadReaderTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void keepsWhatEndpointsReadAndDropsTheRest() throws Exception {
+		JsonNode root;
+		try (InputStream in = getClass().getResourceAsStream("/fixtures/forecast.json")) {
+			root = new ForecastPayloadReader(objectMapper).read(in);
+		}
+
+		assertEquals("London", root.path("location").path("name").asText());
+		assertEquals(14.2, root.path("current").path("temp_c").asDouble());
+
+		JsonNode days = root.path("forecast").path("forecastday");
+		assertEquals(7, days.size());
+		assertTrue(days.get(0).path("day").has("maxtemp_c"));
+		assertFalse(days.get(0).has("astro"));
+
+		assertEquals(24, days.get(0).path("hour").size());
+		assertFalse(days.get(1).has("hour"));
+
+		JsonNode hour = days.get(0).path("hour").get(0);
+		assertTrue(hour.has("chance_of_rain"));
+		assertFalse(hour.has("dewpoint_c"));
+	}
+
+}
@@ -0,0 +1,37 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class GridIndexTests {
+
+	@Test
+	void findsPointsInsideTheBox() {
+		GridIndex<String> grid = new GridIndex<>();
+		grid.add(51.52, -0.11, "london");
+		grid.add(48.86, 2.35, "paris");
+		grid.add(40.71, -74.01, "new york");
+
+		assertEquals(List.of("london"), values(grid.within(51, -1, 52, 0)));
+		assertEquals(2, grid.within(45, -5, 55, 5).size());
+		assertEquals(3, grid.within(-90, -180, 90, 180).size());
+		assertEquals(0, grid.within(10, 10, 20, 20).size());
+	}
+
+	@Test
+	void boxMayCrossTheAntimeridian() {
+		GridIndex<String> grid = new GridIndex<>();
+		grid.add(-18.14, 178.44, "suva");
+		grid.add(-13.83, -171.76, "apia");
+		grid.add(-36.85, 174.76, "auckland");
+
+		assertEquals(List.of("apia", "suva"), values(grid.within(-20, 175, -10, -170)).stream().sorted().toList());
+	}
+
+	private static List<String> values(List<GridIndex.Point<String>> points) {
+		return points.stream().map(GridIndex.Point::value).toList();
+	}
+}
@@ -0,0 +1,73 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class HedgerTests {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+	private final UpstreamQuota quota = new UpstreamQuota(registry, 6000, 1000, 0.5, 0.2);
+
+	@Test
+	void slowFirstAttemptIsOvertakenAndCancelled() throws Exception {
+		Hedger hedger = hedging(1.0).forOperation("forecast");
+		warmUp(hedger);
+
+		AtomicInteger attempts = new AtomicInteger();
+		CountDownLatch cancelled = new CountDownLatch(1);
+		long start = System.nanoTime();
+		String answer = hedger.call(() -> {
+			if (attempts.incrementAndGet() == 1) {
+				try {
+					Thread.sleep(5_000);
+				} catch (InterruptedException e) {
+					cancelled.countDown();
+					throw e;
+				}
+				return "first";
+			}
+			return "hedge";
+		});
+
+		assertEquals("hedge", answer);
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+		assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+		assertEquals(1, registry.get("weatherapi.hedge.requests").tag("outcome", "won").counter().count());
+	}
+
+	@Test
+	void hedgeRateIsCapped() throws Exception {
+		Hedger hedger = hedging(0.0).forOperation("current");
+		warmUp(hedger);
+
+		AtomicInteger attempts = new AtomicInteger();
+		assertEquals("first", hedger.call(() -> {
+			attempts.incrementAndGet();
+			Thread.sleep(200);
+			return "first";
+		}));
+
+		assertEquals(1, attempts.get());
+		assertEquals(1, registry.get("weatherapi.hedge.skipped").tag("reason", "rate").counter().count());
+	}
+
+	private UpstreamHedging hedging(double maxRate) {
+		return new UpstreamHedging(quota, registry, true, 95, Duration.ofMillis(20), maxRate, 16, 4);
+	}
+
+	/* a few fast calls so the delay settles near min-delay */
+	private static void warmUp(Hedger hedger) throws Exception {
+		for (int i = 0; i < 4; i++) hedger.call(() -> "warm");
+		assertEquals(20, hedger.delayMillis());
+	}
+}
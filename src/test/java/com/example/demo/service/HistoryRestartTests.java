@@ -0,0 +1,68 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Right after a restart, history written by the previous run is found by
+ * city name (through the aliases kept with it), without asking upstream.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class HistoryRestartTests {
+
+	@TempDir
+	static Path history;
+
+	private static String key;
+
+	@Autowired
+	private MockMvc mvc;
+
+	@DynamicPropertySource
+	static void historyPath(DynamicPropertyRegistry registry) {
+		registry.add("weatherapi.history.path", () -> history.toString());
+	}
+
+	@BeforeAll
+	static void previousRun() throws Exception {
+		ObjectMapper objectMapper = new ObjectMapper();
+		JsonNode payload = objectMapper.readTree(new ClassPathResource("fixtures/forecast.json").getInputStream());
+		((ObjectNode) payload.path("current")).put("last_updated_epoch", System.currentTimeMillis() / 1000 - 600);
+		key = LocationKeys.canonical(payload);
+
+		ObservationStore store = new ObservationStore(history.toString(), Duration.ofDays(400));
+		store.record(payload);
+		store.recordAlias("london", key);
+		store.shutdown();
+	}
+
+	@Test
+	void historyIsFoundByNameAfterARestart() throws Exception {
+		MockHttpServletResponse response = mvc.perform(get("/api/stats?city=London")).andReturn().getResponse();
+
+		assertEquals(200, response.getStatus());
+		JsonNode stats = new ObjectMapper().readTree(response.getContentAsString());
+		assertEquals(key, stats.path("location").asText());
+		assertEquals(1, stats.path("windows").get(0).path("samples").asInt());
+	}
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class LiveConditionsTests {
+
+	private final MeterRegistry registry = new SimpleMeterRegistry();
+
+	@Test
+	void unknownLocationIsDroppedAfterOnePoll() throws Exception {
+		AtomicInteger polls = new AtomicInteger();
+		LiveConditions live = live(query -> {
+			polls.incrementAndGet();
+			throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "Bad Request", null, null, null);
+		});
+
+		live.subscribe(List.of("nowhere"), conditions -> conditions);
+		awaitNoTopics(live);
+
+		Thread.sleep(50);
+		assertEquals(1, polls.get());
+		assertEquals(1, registry.get("weatherapi.live.dropped").tag("reason", "rejected").counter().count());
+		live.close();
+	}
+
+	@Test
+	void failingLocationBacksOffAndIsDropped() throws Exception {
+		List<Long> polledAt = new CopyOnWriteArrayList<>();
+		LiveConditions live = live(query -> {
+			polledAt.add(System.nanoTime());
+			throw new ResourceAccessException("timed out");
+		});
+
+		live.subscribe(List.of("oslo"), conditions -> conditions);
+		awaitNoTopics(live);
+
+		assertEquals(3, polledAt.size());
+		// the second gap waits out more poll intervals than the first
+		assertTrue(polledAt.get(2) - polledAt.get(1) > polledAt.get(1) - polledAt.get(0));
+		live.close();
+	}
+
+	@Test
+	void topicsAreCapped() {
+		LiveConditions live = live(query -> {
+			Thread.sleep(10_000);
+			return null;
+		});
+
+		live.subscribe(List.of("a", "b"), conditions -> conditions);
+		assertThrows(LiveConditions.TooManyTopicsException.class,
+				() -> live.subscribe(List.of("a", "c"), conditions -> conditions));
+		assertEquals(2, live.topics());
+		assertEquals(1, live.subscribers());
+		assertThrows(IllegalArgumentException.class,
+				() -> live.subscribe(List.of("a", "b", "c", "d"), conditions -> conditions));
+		live.close();
+	}
+
+	/* 20 ms polls, 3 locations per subscriber, 2 topics, 3 failures in a row */
+	private LiveConditions live(LiveConditions.Source source) {
+		return new LiveConditions(source, String::toLowerCase, new ObjectMapper(), registry,
+				Duration.ofMillis(20), Duration.ofMinutes(1), Duration.ofMinutes(1), 3, 2, 3);
+	}
+
+	private static void awaitNoTopics(LiveConditions live) throws InterruptedException {
+		for (int i = 0; i < 200 && live.topics() > 0; i++) Thread.sleep(10);
+		assertEquals(0, live.topics());
+	}
+}
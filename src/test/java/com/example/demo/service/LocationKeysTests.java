@@ -0,0 +1,51 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class LocationKeysTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	void nearbyCoordinatesSnapToOneCell() {
+		LocationKeys keys = new LocationKeys(0.05, 100);
+
+		assertEquals("51.5,-0.15", keys.snap(51.507351, -0.127758));
+		assertEquals("51.5,-0.15", keys.snap(51.51, -0.13));
+		assertEquals("-33.85,151.2", keys.snap(-33.8688, 151.2093));
+		assertEquals("0,-180", keys.snap(0.001, 180.0));
+	}
+
+	@Test
+	void coordinateQueriesSnapUnlessAlreadyKnown() throws Exception {
+		LocationKeys keys = new LocationKeys(0.05, 100);
+		assertEquals("51.5,-0.15", keys.snapQuery("51.507351,-0.127758"));
+		assertEquals("51.5,-0.15", keys.snapQuery("51.51, -0.13"));
+		assertEquals("london", keys.snapQuery("london"));
+
+		keys.learn("51.5,-0.15", objectMapper.readTree("{\"location\":{\"lat\":51.52,\"lon\":-0.11}}"));
+		assertEquals("51.52,-0.11", keys.snapQuery("51.52,-0.11"));
+	}
+
+	@Test
+	void queriesResolvingToTheSameLocationShareItsKey() throws Exception {
+		LocationKeys keys = new LocationKeys(0.05, 100);
+		var payload = objectMapper.readTree("{\"location\":{\"name\":\"London\",\"lat\":51.52,\"lon\":-0.11}}");
+
+		assertEquals("london", keys.resolve("london"));
+		assertEquals("51.52,-0.11", keys.learn("london", payload));
+		assertEquals("51.52,-0.11", keys.learn("51.5,-0.1", payload));
+
+		assertEquals("51.52,-0.11", keys.resolve("london"));
+		assertEquals("51.52,-0.11", keys.resolve("51.5,-0.1"));
+		assertEquals(2, keys.aliases());
+
+		assertNull(keys.learn("nowhere", objectMapper.readTree("{\"error\":{}}")));
+		assertEquals("nowhere", keys.resolve("nowhere"));
+	}
+}
@@ -0,0 +1,159 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+class ObservationStoreTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@TempDir
+	Path dir;
+
+	private JsonNode forecast;
+	private String key;
+	private LocalDate today;
+
+	@BeforeEach
+	void loadFixture() throws Exception {
+		forecast = objectMapper.readTree(new ClassPathResource("fixtures/forecast.json").getInputStream());
+		key = LocationKeys.canonical(forecast);
+		today = LocalDate.parse(forecast.path("forecast").path("forecastday").get(0).path("date").asText());
+	}
+
+	@Test
+	void fetchedPayloadsAreServedBackByRange() {
+		ObservationStore store = store();
+		store.record(forecast);
+		store.record(dated(forecast, today.minusDays(1), 15.5));
+		store.shutdown();
+
+		List<ObservationStore.DailyObservation> days = store.daily(key, today.minusDays(30), today);
+		assertEquals(2, days.size());
+		assertEquals(today.minusDays(1), days.get(0).date());
+		assertEquals(15.5, days.get(0).maxTempC());
+		assertEquals(forecast.path("forecast").path("forecastday").get(0).path("day").path("mintemp_c").asDouble(),
+				days.get(1).minTempC());
+		assertEquals("Sunny", days.get(1).conditionText());
+
+		long updated = forecast.path("current").path("last_updated_epoch").asLong();
+		List<ObservationStore.CurrentObservation> readings = store.current(key, updated - 3600, updated);
+		assertEquals(1, readings.size());
+		assertEquals(forecast.path("current").path("temp_c").asDouble(), readings.get(0).tempC());
+	}
+
+	@Test
+	void compactionKeepsTheLatestPerDayAndDropsExpiredMonths() throws Exception {
+		ObservationStore writer = store();
+		for (int i = 0; i < 5; i++) writer.record(dated(forecast, today, 10 + i));
+		writer.record(dated(forecast, LocalDate.of(2001, 1, 15), 3));
+		writer.shutdown();
+
+		Path segment;
+		try (var files = Files.walk(dir)) {
+			segment = files.filter(p -> p.toString().contains("daily") && p.toString().contains(today.toString().substring(0, 7)))
+					.filter(Files::isRegularFile).findFirst().orElseThrow();
+		}
+		long before = Files.size(segment);
+		assertTrue(Files.isDirectory(dir.resolve("2001-01")));
+
+		ObservationStore store = store();
+		store.compact();
+
+		assertTrue(Files.size(segment) < before);
+		assertFalse(Files.exists(dir.resolve("2001-01")));
+		List<ObservationStore.DailyObservation> days = store.daily(key, today, today);
+		assertEquals(1, days.size());
+		assertEquals(14, days.get(0).maxTempC());
+	}
+
+	@Test
+	void damagedRecordsEndTheSegmentWithoutFailingTheRead() throws Exception {
+		ObservationStore writer = store();
+		writer.record(forecast);
+		writer.shutdown();
+
+		Path daily = segment("daily");
+		Path current = segment("current");
+		// a record too short for its layout, then one with an impossible length
+		Files.write(daily, new byte[]{0, 3, 1, 2, 3}, StandardOpenOption.APPEND);
+		Files.write(current, new byte[]{(byte) 0xff, (byte) 0xff}, StandardOpenOption.APPEND);
+		Files.write(current, new byte[0xffff], StandardOpenOption.APPEND);
+
+		ObservationStore store = store();
+		assertEquals(1, store.daily(key, today, today).size());
+		long updated = forecast.path("current").path("last_updated_epoch").asLong();
+		assertEquals(1, store.current(key, updated, updated).size());
+	}
+
+	@Test
+	void aliasesSurviveARestartAndCompactToOneLineEach() throws Exception {
+		ObservationStore writer = store();
+		writer.recordAlias("london", key);
+		writer.recordAlias("paris", "48.87,2.33");
+		writer.recordAlias("london", "51.5,-0.1");
+		writer.shutdown();
+
+		ObservationStore store = store();
+		assertEquals(Map.of("london", "51.5,-0.1", "paris", "48.87,2.33"), store.aliases());
+
+		store.compact();
+		assertEquals(2, Files.readAllLines(dir.resolve("aliases.tsv")).size());
+		assertEquals(Map.of("london", "51.5,-0.1", "paris", "48.87,2.33"), store().aliases());
+	}
+
+	@Test
+	void longTextIsCutBetweenCharacters() {
+		JsonNode payload = forecast.deepCopy();
+		ObjectNode day0 = (ObjectNode) payload.path("forecast").path("forecastday").get(0).path("day");
+		// 301 bytes in UTF-8, the 200th byte in the middle of an é
+		((ObjectNode) day0.path("condition")).put("text", "x" + "é".repeat(150));
+
+		ObservationStore store = store();
+		store.record(payload);
+		store.shutdown();
+
+		assertEquals("x" + "é".repeat(99), store.daily(key, today, today).get(0).conditionText());
+	}
+
+	private Path segment(String series) throws Exception {
+		try (var files = Files.walk(dir)) {
+			return files.filter(p -> p.toString().contains(series)).filter(Files::isRegularFile).findFirst().orElseThrow();
+		}
+	}
+
+	/* retention reaching back to 2002: the fixture's days are kept, 2001 is not */
+	private ObservationStore store() {
+		return new ObservationStore(dir.toString(),
+				Duration.ofDays(ChronoUnit.DAYS.between(LocalDate.of(2002, 1, 1), LocalDate.now())));
+	}
+
+	/* the fixture with its first day moved to {@code date}, reading maxTemp */
+	private JsonNode dated(JsonNode payload, LocalDate date, double maxTemp) {
+		JsonNode copy = payload.deepCopy();
+		ObjectNode day0 = (ObjectNode) copy.path("forecast").path("forecastday").get(0);
+		day0.put("date", date.toString());
+		((ObjectNode) day0.path("day")).put("maxtemp_c", maxTemp);
+		((ObjectNode) copy.path("current")).put("last_updated_epoch", date.toEpochDay() * 86_400 + 3600);
+		return copy;
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class RollingStatsTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void incrementalWindowsMatchARecount() {
+		Duration[] spans = {Duration.ofHours(1), Duration.ofHours(6), Duration.ofDays(1)};
+		double[] percentiles = {10, 50, 90, 100};
+		LocationSeries series = new LocationSeries(spans);
+		List<long[]> readings = new ArrayList<>();
+		Random random = new Random(7);
+
+		long now = 1_700_000_000L;
+		for (int i = 0; i < 3000; i++) {
+			now += 60 + random.nextInt(900);
+			// drifting temperature, so the histograms have to widen now and then
+			int[] tenths = {i / 4 - 200 + random.nextInt(60), random.nextInt(1001), random.nextInt(800)};
+			series.add(now, tenths);
+			readings.add(new long[]{now, tenths[0], tenths[1], tenths[2]});
+			series.expire(now);
+
+			if (i % 97 != 0) continue;
+			for (int w = 0; w < spans.length; w++) {
+				long cutoff = now - spans[w].toSeconds();
+				for (int m = 0; m < LocationSeries.METRICS.length; m++) {
+					int metric = m;
+					int[] window = readings.stream().filter(r -> r[0] > cutoff).mapToInt(r -> (int) r[metric + 1]).sorted().toArray();
+					LocationSeries.Summary summary = series.summary(w, m, percentiles);
+
+					assertEquals(window.length, summary.samples());
+					assertEquals(window[0] / 10.0, summary.min());
+					assertEquals(window[window.length - 1] / 10.0, summary.max());
+					assertEquals(Arrays.stream(window).average().orElseThrow() / 10.0, summary.mean(), 1e-9);
+					for (int p = 0; p < percentiles.length; p++) {
+						int rank = Math.max(1, (int) Math.ceil(percentiles[p] / 100 * window.length));
+						assertEquals(window[rank - 1] / 10.0, summary.percentiles()[p]);
+					}
+				}
+			}
+		}
+		// the ring only keeps what the longest window still covers
+		assertEquals(series.summary(2, 0, percentiles).samples(), series.size());
+	}
+
+	@Test
+	void readingsAreCountedOnceAndBackfilledFromHistory() throws Exception {
+		JsonNode payload = objectMapper.readTree(new ClassPathResource("fixtures/forecast.json").getInputStream());
+		String key = LocationKeys.canonical(payload);
+		long now = System.currentTimeMillis() / 1000;
+
+		ObservationStore store = new ObservationStore(dir.toString(), Duration.ofDays(400));
+		store.record(reading(payload, now - 2 * 86_400, 10.0));
+		store.shutdown();
+
+		RollingStats stats = new RollingStats(store, new SimpleMeterRegistry(),
+				new String[]{"24h", "7d"}, new double[]{50}, 100);
+		stats.record(reading(payload, now - 600, 20.0));
+		stats.record(reading(payload, now - 600, 20.0));
+		stats.record(reading(payload, now - 60, 24.0));
+
+		List<RollingStats.Window> windows = stats.stats(key);
+		assertEquals("24h", windows.get(0).window());
+		assertEquals(2, windows.get(0).samples());
+		assertEquals(22.0, windows.get(0).metrics().get("temp_c").mean());
+		assertEquals(20.0, windows.get(0).metrics().get("temp_c").percentiles().get("p50"));
+		assertEquals(3, windows.get(1).samples());
+		assertEquals(10.0, windows.get(1).metrics().get("temp_c").min());
+
+		assertTrue(stats.stats("0.0,0.0").isEmpty());
+		assertEquals(1, stats.size());
+	}
+
+	@Test
+	void recordingAloneKeepsOnlyTheLongestWindow() throws Exception {
+		JsonNode payload = objectMapper.readTree(new ClassPathResource("fixtures/forecast.json").getInputStream());
+		String key = LocationKeys.canonical(payload);
+		RollingStats stats = new RollingStats(new ObservationStore("", Duration.ofDays(400)), new SimpleMeterRegistry(),
+				new String[]{"1h", "1d"}, new double[]{50}, 100);
+
+		long epochSecond = 1_700_000_000L;
+		for (int i = 0; i < 5000; i++) {
+			epochSecond += 600;
+			stats.record(reading(payload, epochSecond, 15.0));
+		}
+
+		// one day of readings every ten minutes, never stats() to trim it
+		assertTrue(stats.readings(key) <= 24 * 6, "readings: " + stats.readings(key));
+	}
+
+	/* the fixture's current block as a reading taken at {@code epochSecond} */
+	private static JsonNode reading(JsonNode payload, long epochSecond, double tempC) {
+		JsonNode copy = payload.deepCopy();
+		((ObjectNode) copy.path("current")).put("last_updated_epoch", epochSecond).put("temp_c", tempC);
+		return copy;
+	}
+}
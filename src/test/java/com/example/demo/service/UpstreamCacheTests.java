@@ -0,0 +1,93 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class UpstreamCacheTests {
+
+	@Test
+	void concurrentMissesShareOneLoad() throws Exception {
+		UpstreamCache<String> cache = new UpstreamCache<>(100);
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			results.add(pool.submit(() -> cache.get("london", Duration.ofMinutes(1), () -> {
+				loads.incrementAndGet();
+				release.await();
+				return "payload";
+			})));
+		}
+		Thread.sleep(100);
+		release.countDown();
+
+		for (Future<String> f : results) {
+			assertEquals("payload", f.get());
+		}
+		pool.shutdown();
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void expiredEntryIsServedStaleWhileItReloads() throws Exception {
+		UpstreamCache<String> cache = new UpstreamCache<>(100, Duration.ofMinutes(1), Runnable::run);
+
+		cache.get("rome", Duration.ofMillis(1), () -> "v1");
+		Thread.sleep(5);
+
+		assertEquals("v1", cache.get("rome", Duration.ofMinutes(1), () -> "v2"));
+		assertEquals("v2", cache.get("rome", Duration.ofMinutes(1), () -> "v3"));
+		assertEquals(List.of("rome"), cache.hottest(5));
+	}
+
+	@Test
+	void failuresAreNotCached() throws Exception {
+		UpstreamCache<String> cache = new UpstreamCache<>(100);
+
+		assertThrows(IllegalStateException.class, () -> cache.get("paris", Duration.ofMinutes(1), () -> {
+			throw new IllegalStateException("boom");
+		}));
+		assertEquals("ok", cache.get("paris", Duration.ofMinutes(1), () -> "ok"));
+	}
+
+	@Test
+	void errorsReachWaitingCallersToo() throws Exception {
+		UpstreamCache<String> cache = new UpstreamCache<>(100);
+		CountDownLatch release = new CountDownLatch(1);
+
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		List<Future<String>> results = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			results.add(pool.submit(() -> cache.get("oslo", Duration.ofMinutes(1), () -> {
+				release.await();
+				throw new StackOverflowError();
+			})));
+		}
+		Thread.sleep(100);
+		release.countDown();
+
+		for (Future<String> f : results) {
+			ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(5, TimeUnit.SECONDS));
+			assertInstanceOf(StackOverflowError.class, e.getCause());
+		}
+		pool.shutdown();
+		assertEquals("ok", cache.get("oslo", Duration.ofMinutes(1), () -> "ok"));
+	}
+
+}